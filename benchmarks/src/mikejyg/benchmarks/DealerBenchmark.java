@@ -0,0 +1,86 @@
+/*
+	Copyright 2012 Junyang Gu
+
+	This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package mikejyg.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import mikejyg.texasHoldem.Dealer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * scoring of completed deals, per number of hands
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DealerBenchmark {
+
+	// a power of 2
+	static private final int DEALS = 64;
+	
+	@Param({"2", "3", "4", "5", "6", "7", "8", "9"})
+	public int hands;
+	
+	private Dealer [] dealers = new Dealer[DEALS];
+	private int dealIdx;
+	
+	@Setup
+	public void setup() {
+		for (int i=0; i<DEALS; i++) {
+			dealers[i] = new Dealer(i);
+			dealers[i].setHandsTotal(hands);
+			while ( !dealers[i].isCompleted() )
+				dealers[i].deal();
+		}
+	}
+	
+	@Benchmark
+	public Dealer scoreHands() {
+		Dealer dealer = dealers[dealIdx++ & (DEALS-1)];
+		dealer.scoreHands();
+		return dealer;
+	}
+	
+	/**
+	 * a complete deal, from shuffling to scoring
+	 */
+	@Benchmark
+	public Dealer dealAndScore() {
+		Dealer dealer = dealers[dealIdx++ & (DEALS-1)];
+		dealer.clear();
+		while ( !dealer.isCompleted() )
+			dealer.deal();
+		dealer.scoreHands();
+		return dealer;
+	}
+	
+}
@@ -0,0 +1,125 @@
+/*
+	Copyright 2012 Junyang Gu
+
+	This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package mikejyg.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import mikejyg.playingCards.Card;
+import mikejyg.playingCards.Deck;
+import mikejyg.playingCards.SplittableShuffleRandom;
+import mikejyg.playingCards.Xoshiro256StarStar;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * shuffling and dealing
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DeckBenchmark {
+
+	private Deck deck = new Deck(1);
+	
+	private Deck xoshiroDeck = new Deck( new Xoshiro256StarStar(1) );
+	
+	private Deck splittableDeck = new Deck( new SplittableShuffleRandom(1) );
+	
+	private Deck lazyDeck = new Deck(1);
+	
+	private Card [] dealt = new Card[7];
+	
+	{
+		lazyDeck.setLazyShuffle(true);
+	}
+	
+	private long seed = 1;
+	
+	@Benchmark
+	public Deck shuffle2() {
+		deck.shuffle2();
+		return deck;
+	}
+	
+	@Benchmark
+	public Deck shuffle2Xoshiro() {
+		xoshiroDeck.shuffle2();
+		return xoshiroDeck;
+	}
+	
+	@Benchmark
+	public Deck shuffle2Splittable() {
+		splittableDeck.shuffle2();
+		return splittableDeck;
+	}
+	
+	@Benchmark
+	public Deck shuffleGu() {
+		deck.shuffleGu();
+		return deck;
+	}
+	
+	/**
+	 * a new deck per hand, as Evaluator.main did
+	 */
+	@Benchmark
+	public void newDeckDeal7(Blackhole blackhole) {
+		Deck newDeck = new Deck(seed++);
+		newDeck.shuffle();
+		for (int i=0; i<7; i++) {
+			Card card = newDeck.removeTailCard();
+			blackhole.consume(card);
+		}
+	}
+	
+	/**
+	 * one deck reset per hand, shuffled in full
+	 */
+	@Benchmark
+	public void resetDeal7(Blackhole blackhole) {
+		deck.reset(seed++);
+		deck.shuffle();
+		for (int i=0; i<7; i++) {
+			blackhole.consume( deck.removeTailCardValue() );
+		}
+	}
+	
+	/**
+	 * one deck reset per hand, shuffled lazily, as Evaluator.main does now
+	 */
+	@Benchmark
+	public Card [] lazyResetDeal7() {
+		lazyDeck.reset(seed++);
+		lazyDeck.shuffle();
+		lazyDeck.removeTailCards(dealt);
+		return dealt;
+	}
+	
+}
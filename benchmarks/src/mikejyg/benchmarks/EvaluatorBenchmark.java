@@ -0,0 +1,87 @@
+/*
+	Copyright 2012 Junyang Gu
+
+	This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package mikejyg.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import mikejyg.playingCards.Card;
+import mikejyg.texasHoldem.Evaluator;
+import mikejyg.texasHoldem.FastEvaluator;
+import mikejyg.texasHoldem.Score;
+import mikejyg.texasHoldem.Score.Pattern;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * evaluation of 7-card hands, per pattern
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EvaluatorBenchmark {
+
+	// a power of 2
+	static private final int HANDS = 64;
+	
+	@Param({"HIGH_CARD", "PAIR", "TWO_PAIR", "THREE_OF_A_KIND", "STRAIGHT", "FLUSH", 
+		"FULL_HOUSE", "FOUR_OF_A_KIND", "STRAIGHT_FLUSH", "ROYAL_FLUSH"})
+	public Pattern pattern;
+	
+	private Card [][] hands;
+	private int handIdx;
+	
+	private Evaluator evaluator = new Evaluator();
+	
+	@Setup
+	public void setup() {
+		hands = Hands.randomHands(HANDS, pattern, 1);
+	}
+	
+	private Card [] nextHand() {
+		return hands[handIdx++ & (HANDS-1)];
+	}
+	
+	@Benchmark
+	public Score evalulate() {
+		return evaluator.evalulate( nextHand() );
+	}
+	
+	@Benchmark
+	public Score evaluateStatic() {
+		return Evaluator.evaluate( nextHand() );
+	}
+	
+	@Benchmark
+	public int fastEvaluate() {
+		return FastEvaluator.evaluate( nextHand() );
+	}
+	
+}
@@ -0,0 +1,58 @@
+/*
+	Copyright 2012 Junyang Gu
+
+	This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package mikejyg.benchmarks;
+
+import java.util.Random;
+
+import mikejyg.playingCards.Card;
+import mikejyg.texasHoldem.FastEvaluator;
+import mikejyg.texasHoldem.Score.Pattern;
+
+/**
+ * random 7-card hands, for benchmark inputs
+ */
+class Hands {
+
+	/**
+	 * @param pattern the pattern of the hands, null for any
+	 */
+	static Card [][] randomHands(int hands, Pattern pattern, long seed) {
+		Random random = new Random(seed);
+		int [] deck = new int[Card.TOTAL_CARDS];
+		for (int i=0; i<Card.TOTAL_CARDS; i++)
+			deck[i] = i;
+		
+		Card [][] result = new Card[hands][];
+		int handIdx = 0;
+		while (handIdx < hands) {
+			Card [] cards = new Card[7];
+			for (int i=0; i<7; i++) {
+				int j = i + random.nextInt(Card.TOTAL_CARDS - i);
+				int tmp = deck[i];
+				deck[i] = deck[j];
+				deck[j] = tmp;
+				cards[i] = Card.of(deck[i]);
+			}
+			
+			if ( pattern == null || FastEvaluator.getPattern( FastEvaluator.evaluate(cards) ) == pattern )
+				result[handIdx++] = cards;
+		}
+		return result;
+	}
+	
+}
@@ -0,0 +1,69 @@
+/*
+	Copyright 2012 Junyang Gu
+
+	This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package mikejyg.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import mikejyg.playingCards.Card;
+import mikejyg.texasHoldem.Evaluator;
+import mikejyg.texasHoldem.Score;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * comparison of scores
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScoreBenchmark {
+
+	// a power of 2
+	static private final int SCORES = 1024;
+	
+	private Score [] scores = new Score[SCORES];
+	private int scoreIdx;
+	
+	@Setup
+	public void setup() {
+		Card [][] hands = Hands.randomHands(SCORES, null, 1);
+		Evaluator evaluator = new Evaluator();
+		for (int i=0; i<SCORES; i++) {
+			scores[i] = evaluator.evalulate(hands[i]);
+		}
+	}
+	
+	@Benchmark
+	public int compareTo() {
+		int i = scoreIdx++;
+		return scores[i & (SCORES-1)].compareTo( scores[(i+1) & (SCORES-1)] );
+	}
+	
+}
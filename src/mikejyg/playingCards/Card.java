@@ -24,6 +24,9 @@ package mikejyg.playingCards;
  * 
  * For each Suit, Rank and Card, there is a one-to-one matching of an integer value.
  * 
+ * The 52 cards are interned: Card.of() returns the one immutable instance of a card,
+ * with no allocation. Cards made by the constructors are still mutable, through the 
+ * deprecated setters; equal cards have equal hash codes, the card int value.
  */
 public class Card implements Comparable<Card> {
 
@@ -102,10 +105,35 @@ public class Card implements Comparable<Card> {
 	
 	private Rank rank;
 	private Suit suit;
+	
+	// the card int value, kept with the rank and suit
+	private int intValue;
+	
+	// whether this is one of the interned instances, which are immutable
+	private boolean interned;
+	
+	/**
+	 * the interned cards, indexed by card int value
+	 */
+	private static final Card [] CARDS = new Card[TOTAL_CARDS];
+	
+	static {
+		for (Suit suit : Suit.values()) {
+			for (Rank rank : Rank.values()) {
+				Card card = new Card();
+				card.rank = rank;
+				card.suit = suit;
+				card.updateIntValue();
+				card.interned = true;
+				CARDS[card.intValue] = card;
+			}
+		}
+	}
 
 	public Card() {
 		rank=Rank.ACE;
 		suit=Suit.SPADE;
+		updateIntValue();
 	}
 
 	/**
@@ -116,32 +144,107 @@ public class Card implements Comparable<Card> {
 	public Card(int rank, int suit) {
 		this.rank = Rank.getRank(rank);
 		this.suit = Suit.getSuit(suit);
+		updateIntValue();
 	}
 
 	/**
-	 *  construct card from a unique number, [0-51]
+	 *  construct card from a unique number, [0-51].
+	 *  Note the suits are mapped in reverse, so this is not the card of the card int value; 
+	 *  that is Card.of(intValue).
 	 * @param intValue
 	 */
 	public Card(int intValue) {
 		rank = Rank.getRank( intValue%13 + 1 );
 		suit = Suit.getSuit( intValue/13 );
+		updateIntValue();
 	}
 	
 	/**
-	 * @return a unique value of the card, [0-51]
+	 * @return the interned card of a card int value, the reverse of getIntValue()
 	 */
-	public int getIntValue() {
+	public static Card of(int intValue) {
+		return CARDS[intValue];
+	}
+	
+	/**
+	 * @return the interned card of a rank and a suit
+	 */
+	public static Card of(Rank rank, Suit suit) {
+		return CARDS[ toIntValue(rank, suit) ];
+	}
+	
+	/**
+	 * @return the interned instance of this card
+	 */
+	public Card intern() {
+		return CARDS[intValue];
+	}
+	
+	private static int toIntValue(Rank rank, Suit suit) {
 		int rankInt = rank.intValue - 1;
 		if (rankInt==13)
 			rankInt = 0;
 		return suit.intValue*13+rankInt;
 	}
+	
+	private void updateIntValue() {
+		intValue = toIntValue(rank, suit);
+	}
+	
+	/**
+	 * @return a unique value of the card, [0-51]
+	 */
+	public int getIntValue() {
+		return intValue;
+	}
 
 	@Override
 	public String toString() {
 		return rank.getSymbol().toString() + suit.getSymbol();
 	}
 
+	/**
+	 * parse a card from its string form, e.g. "AS" or "Td", the reverse of toString()
+	 */
+	public static Card parse(String str) {
+		if (str.length() != 2)
+			throw new IllegalArgumentException("invalid card: " + str);
+		
+		Rank rank = null;
+		char rankSymbol = Character.toUpperCase(str.charAt(0));
+		for (Rank r : Rank.values()) {
+			if (r.getSymbol() == rankSymbol)
+				rank = r;
+		}
+		
+		Suit suit = null;
+		char suitSymbol = Character.toUpperCase(str.charAt(1));
+		for (Suit s : Suit.values()) {
+			if (s.getSymbol() == suitSymbol)
+				suit = s;
+		}
+		
+		if (rank == null || suit == null)
+			throw new IllegalArgumentException("invalid card: " + str);
+		
+		return of(rank, suit);
+	}
+	
+	/**
+	 * parse cards separated by white spaces, e.g. "AS KS"
+	 */
+	public static Card [] parseCards(String str) {
+		str = str.trim();
+		if (str.length() == 0)
+			return new Card[0];
+		
+		String [] tokens = str.split("\\s+");
+		Card [] cards = new Card[tokens.length];
+		for (int i=0; i<tokens.length; i++)
+			cards[i] = parse(tokens[i]);
+		return cards;
+	}
+
 	@Override
 	public int compareTo(Card o) {
 		int c = rank.compareTo(o.rank);
@@ -153,6 +256,8 @@ public class Card implements Comparable<Card> {
 
 	@Override
 	public boolean equals(Object obj) {
+		if ( !(obj instanceof Card) )
+			return false;
 		Card card2 = (Card) obj;
 		if (rank == card2.rank && suit == card2.suit)
 			return true;
@@ -160,6 +265,11 @@ public class Card implements Comparable<Card> {
 			return false;
 	}
 	
+	@Override
+	public int hashCode() {
+		return intValue;
+	}
+	
 	////////////////////////////
 	// getters and setters
 	
@@ -167,16 +277,30 @@ public class Card implements Comparable<Card> {
 		return rank;
 	}
 
+	/**
+	 * @deprecated cards are to be immutable, use Card.of(). An interned card can not be changed.
+	 */
+	@Deprecated
 	public void setRank(Rank rank) {
+		if (interned)
+			throw new UnsupportedOperationException("interned card " + this);
 		this.rank = rank;
+		updateIntValue();
 	}
 
 	public Suit getSuit() {
 		return suit;
 	}
 
+	/**
+	 * @deprecated cards are to be immutable, use Card.of(). An interned card can not be changed.
+	 */
+	@Deprecated
 	public void setSuit(Suit suit) {
+		if (interned)
+			throw new UnsupportedOperationException("interned card " + this);
 		this.suit = suit;
+		updateIntValue();
 	}
 
 	
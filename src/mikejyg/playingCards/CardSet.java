@@ -0,0 +1,268 @@
+/*
+	Copyright 2012 Junyang Gu
+
+	This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package mikejyg.playingCards;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * a set of cards in one long, bit i for the card of card int value i.
+ * 
+ * Adding, removing and looking up a card, union and intersection, and the size 
+ * are single bit operations. Cards are iterated in ascending order of card int value.
+ */
+public class CardSet implements Iterable<Card> {
+	
+	static public final long ALL_BITS = (1L << Card.TOTAL_CARDS) - 1;
+	
+	private long bits;
+	
+	/**
+	 * an empty set
+	 */
+	public CardSet() {
+	}
+	
+	/**
+	 * @param bits bit i for the card of card int value i
+	 */
+	public CardSet(long bits) {
+		if ( (bits & ~ALL_BITS) != 0 )
+			throw new IllegalArgumentException("bits beyond the cards: " + Long.toHexString(bits));
+		this.bits = bits;
+	}
+	
+	public CardSet(Card... cards) {
+		for (Card card : cards)
+			add(card);
+	}
+	
+	public CardSet(CardSet o) {
+		bits = o.bits;
+	}
+	
+	/**
+	 * @return the set of all 52 cards
+	 */
+	public static CardSet all() {
+		return new CardSet(ALL_BITS);
+	}
+	
+	/**
+	 * @return the bit of a card int value
+	 */
+	public static long toBit(int intValue) {
+		// a shift takes the count modulo 64, so a value beyond the cards would alias another bit
+		if (intValue < 0 || intValue >= Card.TOTAL_CARDS)
+			throw new IllegalArgumentException("card int value beyond the cards: " + intValue);
+		return 1L << intValue;
+	}
+	
+	/**
+	 * @return the bits of cards
+	 */
+	public static long toBits(Card... cards) {
+		long bits = 0;
+		for (Card card : cards)
+			bits |= 1L << card.getIntValue();
+		return bits;
+	}
+	
+	/**
+	 * @return whether the card was not in the set
+	 */
+	public boolean add(Card card) {
+		return add( card.getIntValue() );
+	}
+	
+	public boolean add(int intValue) {
+		long old = bits;
+		bits |= toBit(intValue);
+		return bits != old;
+	}
+	
+	/**
+	 * @return whether the card was in the set
+	 */
+	public boolean remove(Card card) {
+		return remove( card.getIntValue() );
+	}
+	
+	public boolean remove(int intValue) {
+		long old = bits;
+		bits &= ~toBit(intValue);
+		return bits != old;
+	}
+	
+	public boolean contains(Card card) {
+		return contains( card.getIntValue() );
+	}
+	
+	public boolean contains(int intValue) {
+		return (bits & toBit(intValue)) != 0;
+	}
+	
+	/**
+	 * @return whether the sets share a card
+	 */
+	public boolean intersects(CardSet o) {
+		return (bits & o.bits) != 0;
+	}
+	
+	public boolean containsAll(CardSet o) {
+		return (o.bits & ~bits) == 0;
+	}
+	
+	/**
+	 * add the cards of another set, the union
+	 */
+	public void addAll(CardSet o) {
+		bits |= o.bits;
+	}
+	
+	/**
+	 * keep only the cards of another set, the intersection
+	 */
+	public void retainAll(CardSet o) {
+		bits &= o.bits;
+	}
+	
+	public void removeAll(CardSet o) {
+		bits &= ~o.bits;
+	}
+	
+	/**
+	 * @return a new set, the union of two sets
+	 */
+	public static CardSet union(CardSet a, CardSet b) {
+		return new CardSet(a.bits | b.bits);
+	}
+	
+	/**
+	 * @return a new set, the intersection of two sets
+	 */
+	public static CardSet intersection(CardSet a, CardSet b) {
+		return new CardSet(a.bits & b.bits);
+	}
+	
+	/**
+	 * @return a new set, the cards not in this set
+	 */
+	public CardSet complement() {
+		return new CardSet(~bits & ALL_BITS);
+	}
+	
+	public void clear() {
+		bits = 0;
+	}
+	
+	public int size() {
+		return Long.bitCount(bits);
+	}
+	
+	public boolean isEmpty() {
+		return bits == 0;
+	}
+	
+	/**
+	 * @return the card of the lowest card int value
+	 */
+	public Card first() {
+		if (bits == 0)
+			throw new NoSuchElementException("empty card set");
+		return Card.of( Long.numberOfTrailingZeros(bits) );
+	}
+	
+	/**
+	 * @return the cards, in ascending order of card int value
+	 */
+	public Card [] toArray() {
+		Card [] cards = new Card[size()];
+		int i = 0;
+		for (long b=bits; b!=0; b&=b-1)
+			cards[i++] = Card.of( Long.numberOfTrailingZeros(b) );
+		return cards;
+	}
+	
+	/**
+	 * the interned cards, in ascending order of card int value. 
+	 * Changes of the set after the iterator is made are not seen.
+	 */
+	@Override
+	public Iterator<Card> iterator() {
+		return new Iterator<Card>() {
+			private long remaining = bits;
+			
+			@Override
+			public boolean hasNext() {
+				return remaining != 0;
+			}
+			
+			@Override
+			public Card next() {
+				if (remaining == 0)
+					throw new NoSuchElementException();
+				int intValue = Long.numberOfTrailingZeros(remaining);
+				remaining &= remaining - 1;
+				return Card.of(intValue);
+			}
+			
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+	
+	////////////////////////////
+	// getters and setters
+	
+	public long getBits() {
+		return bits;
+	}
+	
+	public void setBits(long bits) {
+		if ( (bits & ~ALL_BITS) != 0 )
+			throw new IllegalArgumentException("bits beyond the cards: " + Long.toHexString(bits));
+		this.bits = bits;
+	}
+	
+	@Override
+	public boolean equals(Object obj) {
+		if ( !(obj instanceof CardSet) )
+			return false;
+		return bits == ((CardSet) obj).bits;
+	}
+	
+	@Override
+	public int hashCode() {
+		return Long.hashCode(bits);
+	}
+	
+	@Override
+	public String toString() {
+		StringBuilder str = new StringBuilder();
+		for (long b=bits; b!=0; b&=b-1) {
+			if (str.length() > 0)
+				str.append(' ');
+			str.append( Card.of( Long.numberOfTrailingZeros(b) ) );
+		}
+		return str.toString();
+	}
+	
+}
@@ -0,0 +1,152 @@
+/*
+	Copyright 2012 Junyang Gu
+
+	This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package mikejyg.playingCards;
+
+/**
+ * a counter based generator, in the style of SplitMix64: the numbers of deal N of a seed 
+ * are a function of (seed, N), so any deal is reached in constant time, without replaying 
+ * the deals before it.
+ *
+ * setDeal() moves to the start of a deal; the numbers of a deal are then drawn in sequence.
+ * A run of deals can be cut into index ranges, each dealt on its own thread or machine, 
+ * and any single deal can be dealt again from its index.
+ */
+public class CounterShuffleRandom implements ShuffleRandom {
+	
+	static private final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+	
+	// the increment between the numbers of a deal, another odd constant, 
+	// so the sequences of consecutive deals do not line up
+	static private final long DRAW_GAMMA = 0xd1b54a32d192ed03L;
+	
+	private long key;
+	
+	private long deal;
+	
+	private long state;
+	
+	public CounterShuffleRandom(long seed) {
+		setSeed(seed);
+	}
+	
+	/**
+	 * at the start of a deal of a seed
+	 */
+	public CounterShuffleRandom(long seed, long deal) {
+		setSeed(seed);
+		setDeal(deal);
+	}
+	
+	/**
+	 * a new seed, at deal 0
+	 */
+	@Override
+	public void setSeed(long seed) {
+		key = Xoshiro256StarStar.mix64(seed);
+		setDeal(0);
+	}
+	
+	/**
+	 * move to the start of a deal
+	 */
+	public void setDeal(long deal) {
+		this.deal = deal;
+		state = Xoshiro256StarStar.mix64(key + deal * GOLDEN_GAMMA);
+	}
+	
+	/**
+	 * move to the start of the next deal
+	 */
+	public void nextDeal() {
+		setDeal(deal + 1);
+	}
+	
+	public long getDeal() {
+		return deal;
+	}
+	
+	public long nextLong() {
+		return Xoshiro256StarStar.mix64(state += DRAW_GAMMA);
+	}
+	
+	/**
+	 * unbiased, by rejection, in the same way as java.util.Random, from the high 31 bits
+	 */
+	@Override
+	public int nextInt(int bound) {
+		if (bound <= 0)
+			throw new IllegalArgumentException("bound must be positive");
+		
+		int r = (int) (nextLong() >>> 33);
+		int m = bound - 1;
+		if ( (bound & m) == 0 )
+			return (int) ( (bound * (long) r) >> 31 );
+		
+		for (int u = r; u - (r = u % bound) + m < 0; )
+			u = (int) (nextLong() >>> 33);
+		return r;
+	}
+	
+	/**
+	 * @return a generator with a key drawn from this one, at deal 0
+	 */
+	@Override
+	public ShuffleRandom split() {
+		return new CounterShuffleRandom( nextLong() );
+	}
+	
+	///////////////////////////////////////////////
+	// test
+	
+	/**
+	 * checks that jumping to a deal draws the same as dealing in order, 
+	 * and that the cards of a deal are spread evenly.
+	 * arguments: seed, number of deals
+	 */
+	public static void main(String[] args) {
+		long seed = args.length >= 1 ? Long.parseLong(args[0]) : 1;
+		int deals = args.length >= 2 ? Integer.parseInt(args[1]) : 1000000;
+		
+		CounterShuffleRandom inOrder = new CounterShuffleRandom(seed);
+		int [] firsts = new int[deals];
+		int [] counts = new int[Card.TOTAL_CARDS];
+		for (int i=0; i<deals; i++) {
+			if (i > 0)
+				inOrder.nextDeal();
+			firsts[i] = inOrder.nextInt(Card.TOTAL_CARDS);
+			counts[ firsts[i] ]++;
+		}
+		
+		// jump to the deals in another order
+		CounterShuffleRandom jumping = new CounterShuffleRandom(seed);
+		for (int i=0; i<deals; i++) {
+			int deal = (int) ( (i * 7919L) % deals );
+			jumping.setDeal(deal);
+			if ( jumping.nextInt(Card.TOTAL_CARDS) != firsts[deal] )
+				throw new Error("deal " + deal + " mismatch");
+		}
+		
+		for (int count : counts) {
+			if ( Math.abs(count - deals / Card.TOTAL_CARDS) > 6 * Math.sqrt(deals / Card.TOTAL_CARDS) )
+				throw new Error("uneven count: " + count);
+		}
+		
+		System.out.println(deals + " deals ok");
+	}
+	
+}
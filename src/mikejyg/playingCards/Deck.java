@@ -17,30 +17,75 @@
 
 package mikejyg.playingCards;
 
-import java.util.ArrayList;
 import java.util.Random;
 
-import mikejyg.utilities.ArrayListUtils;
-
 import org.apache.log4j.Logger;
 
 /**
  * A Deck of cards, with shuffling, dispensing, adding, removing, and etc, capabilities.
  * 
+ * The cards are kept as card int values in an array, between a head and a tail cursor,
+ * so cards are dealt from either end in constant time. A card removed from the middle leaves 
+ * a hole, found through an index of positions by card, and skipped when dealing; 
+ * the holes are closed up before shuffling. 
+ * 
+ * A deck holds each card at most once. reset() restores the 52 cards without allocating.
+ * 
+ * The random generator is pluggable, a java.util.Random by default. For parallel runs,
+ * each worker's deck takes a generator split() from one seeded generator.
+ * 
+ * With lazy shuffling, shuffle() only marks the cards unsettled, and each card dealt from the 
+ * tail takes the one Fisher-Yates swap that settles it, so a deal of a few cards makes only
+ * a few random calls. The cards dealt are the same as those of shuffle2() with the same
+ * generator state. Any other access to the order settles the rest of the deck first.
+ * The swaps left when the deck is shuffled again are not made, so the generator is then
+ * at another point than after shuffle2(); decks reseeded per deal, with reset(seed), are not affected.
  */
 public class Deck {
 	
 	static Logger logger = Logger.getLogger(Deck.class);
 	
-	private ArrayList<Card> cards = new ArrayList<Card>();
+	static private final int CAPACITY = Card.TOTAL_CARDS;
+	
+	static private final byte NONE = -1;
+	
+	/**
+	 * card int values of the cards in native order, as new Card(i)
+	 */
+	static private final byte [] NATIVE_ORDER = new byte[CAPACITY];
+	
+	static {
+		for (int i=0; i<CAPACITY; i++) {
+			NATIVE_ORDER[i] = (byte) new Card(i).getIntValue();
+		}
+	}
+	
+	// card int values, NONE for the holes of removed cards
+	private byte [] cards = new byte[CAPACITY];
+	
+	// the cards are in [head, tail)
+	private int head;
+	private int tail;
+	private int size;
 	
-	private Random random;
+	// positions in cards, by card int value, NONE if not in the deck
+	private byte [] positions = new byte[CAPACITY];
+	
+	// the card objects dealt, by card int value
+	private Card [] cardObjects = new Card[CAPACITY];
+	
+	private ShuffleRandom random;
 	
 	private boolean useGuShuffle = false;
 	
+	private boolean lazyShuffle = false;
+	
+	// with lazy shuffling, the cards in [0, unsettled) are not shuffled yet
+	private int unsettled;
+	
 	public Deck() {
-		random = new Random();
-		init();
+		random = new JdkShuffleRandom( new Random() );
+		reset();
 	}
 
 	/**
@@ -48,19 +93,43 @@ public class Deck {
 	 * @param randomSeed
 	 */
 	public Deck(long randomSeed) {
-		random = new Random(randomSeed);
-		init();
+		random = new JdkShuffleRandom( new Random(randomSeed) );
+		reset();
+	}
+	
+	/**
+	 * initialize deck with a random generator
+	 */
+	public Deck(ShuffleRandom random) {
+		this.random = random;
+		reset();
 	}
 	
 	/**
-	 * fill the deck with the 52 cards, in native order
+	 * fill the deck with the 52 interned cards, in native order
 	 */
-	private void init() {
-		clear();
-		for (int i=0; i<Card.TOTAL_CARDS; i++) {
-			addCard(new Card(i));
+	public void reset() {
+		for (int i=0; i<CAPACITY; i++) {
+			int value = NATIVE_ORDER[i];
+			cards[i] = (byte) value;
+			positions[value] = (byte) i;
+			cardObjects[value] = Card.of(value);
 		}
-		logger.debug("cards: " + toString());
+		head = 0;
+		tail = CAPACITY;
+		size = CAPACITY;
+		unsettled = 0;
+		if (logger.isDebugEnabled())
+			logger.debug("cards: " + toString());
+	}
+	
+	/**
+	 * fill the deck with the 52 cards, in native order, and seed the random generator,
+	 * the same as a new Deck(randomSeed)
+	 */
+	public void reset(long randomSeed) {
+		random.setSeed(randomSeed);
+		reset();
 	}
 
 	/**
@@ -69,87 +138,292 @@ public class Deck {
 	public void shuffle() {
 		if (useGuShuffle)
 			shuffleGu();
+		else if (lazyShuffle)
+			shuffleLazy();
 		else
 			shuffle2();
-		logger.debug("shuffle: " + toString());
+		if (logger.isDebugEnabled())
+			logger.debug("shuffle: " + toString());
 	}
 	
 	/**
 	 *  my own algorithm, seems to produce somewhat biased outcome
 	 */
 	public void shuffleGu() {
-		for (int i=0; i<cards.size(); i++) {
-			int subIdx = random.nextInt(cards.size());
+		unsettled = 0;
+		compact();
+		for (int i=0; i<size; i++) {
+			int subIdx = random.nextInt(size);
 			// switch places of a pair of cards
-			swapCards(i, subIdx);
+			byte tmp = cards[i];
+			cards[i] = cards[subIdx];
+			cards[subIdx] = tmp;
 		}
+		updatePositions();
 	}
 
 	/**
 	 *  Durstenfeld's version of FisherYates shuffle
 	 */
 	public void shuffle2() {
-		for (int i=cards.size()-1; i>0; i--) {
+		unsettled = 0;
+		compact();
+		for (int i=size-1; i>0; i--) {
 			int subIdx = random.nextInt(i+1);
 			// switch places of a pair of cards
-			swapCards(i, subIdx);
+			byte tmp = cards[i];
+			cards[i] = cards[subIdx];
+			cards[subIdx] = tmp;
 		}
+		updatePositions();
+	}
+	
+	/**
+	 * the same as shuffle2(), with the swaps made as the cards are dealt from the tail
+	 */
+	public void shuffleLazy() {
+		unsettled = 0;
+		compact();
+		unsettled = size;
+	}
+	
+	/**
+	 * the Fisher-Yates swap of position i, as in shuffle2()
+	 */
+	private void settle(int i) {
+		if (i > 0) {
+			int subIdx = random.nextInt(i+1);
+			byte tmp = cards[i];
+			cards[i] = cards[subIdx];
+			cards[subIdx] = tmp;
+			positions[ cards[i] ] = (byte) i;
+			positions[ cards[subIdx] ] = (byte) subIdx;
+		}
+		unsettled = i;
+	}
+	
+	/**
+	 * make the swaps left of a lazy shuffle
+	 */
+	private void settle() {
+		while (unsettled > 0)
+			settle(unsettled - 1);
 	}
 	
 	public void swapCards(int idx1, int idx2) {
 		if (idx1==idx2)
 			return;
 		
-		Card tmp = cards.get(idx1);
-		cards.set( idx1, cards.get(idx2) );
-		cards.set(idx2, tmp);
+		settle();
+		compact();
+		byte tmp = cards[idx1];
+		cards[idx1] = cards[idx2];
+		cards[idx2] = tmp;
+		positions[ cards[idx1] ] = (byte) idx1;
+		positions[ cards[idx2] ] = (byte) idx2;
+	}
+	
+	/**
+	 * move the cards to the start of the array, without holes
+	 */
+	private void compact() {
+		if (head == 0 && tail == size)
+			return;
+		
+		int idx = 0;
+		for (int i=head; i<tail; i++) {
+			if (cards[i] != NONE)
+				cards[idx++] = cards[i];
+		}
+		head = 0;
+		tail = size;
+		updatePositions();
+	}
+	
+	private void updatePositions() {
+		for (int i=head; i<tail; i++) {
+			positions[ cards[i] ] = (byte) i;
+		}
 	}
 	
 	public Card removeHeadCard() {
-		return cards.remove(0);
+		return cardObjects[ removeHeadCardValue() ];
 	}
 	
 	/**
 	 *  get and remove a card from the end of the deck
 	 */
 	public Card removeTailCard() {
-		return ArrayListUtils.removeTail(cards);
+		return cardObjects[ removeTailCardValue() ];
+	}
+	
+	/**
+	 * @return the card int value of the card removed from the head of the deck
+	 */
+	public int removeHeadCardValue() {
+		if (size == 0)
+			throw new IndexOutOfBoundsException("empty deck");
+		
+		settle();
+		while (cards[head] == NONE)
+			head++;
+		int value = cards[head++];
+		positions[value] = NONE;
+		size--;
+		return value;
+	}
+	
+	/**
+	 * @return the card int value of the card removed from the end of the deck
+	 */
+	public int removeTailCardValue() {
+		if (size == 0)
+			throw new IndexOutOfBoundsException("empty deck");
+		
+		while (cards[tail-1] == NONE)
+			tail--;
+		if (tail - 1 < unsettled)
+			settle(tail - 1);
+		int value = cards[--tail];
+		positions[value] = NONE;
+		size--;
+		return value;
+	}
+	
+	/**
+	 * remove cards from the end of the deck, as many as the array holds
+	 */
+	public void removeTailCards(Card [] dealt) {
+		if (dealt.length > size)
+			throw new IndexOutOfBoundsException("not enough cards");
+		
+		for (int i=0; i<dealt.length; i++)
+			dealt[i] = cardObjects[ removeTailCardValue() ];
 	}
 	
 	/**
 	 * clear all cards from the deck
 	 */
 	public void clear() {
-		cards.clear();
+		for (int i=head; i<tail; i++) {
+			if (cards[i] != NONE)
+				positions[ cards[i] ] = NONE;
+		}
+		head = 0;
+		tail = 0;
+		size = 0;
+		unsettled = 0;
 	}
 	
 	/**
-	 * add a card
+	 * add a card, at the end of the deck
 	 */
 	public void addCard(Card card) {
-		cards.add(card);
+		int value = card.getIntValue();
+		if (positions[value] != NONE)
+			throw new IllegalArgumentException("card already in the deck: " + card);
+		
+		settle();
+		if (tail == CAPACITY)
+			compact();
+		cards[tail] = (byte) value;
+		positions[value] = (byte) tail;
+		tail++;
+		size++;
+		cardObjects[value] = card;
 	}
 	
 	/**
-	 * remove a card 
+	 * remove a card, if it is in the deck
 	 */
 	public void removeCard(Card card) {
-		cards.remove(card);
+		removeCardValue( card.getIntValue() );
+	}
+	
+	/**
+	 * remove the cards of a set, those in the deck, e.g. dead cards
+	 */
+	public void removeCards(CardSet cardSet) {
+		for (long bits=cardSet.getBits(); bits!=0; bits&=bits-1)
+			removeCardValue( Long.numberOfTrailingZeros(bits) );
+	}
+	
+	private void removeCardValue(int value) {
+		if (positions[value] == NONE)
+			return;
+		
+		settle();
+		int position = positions[value];
+		cards[position] = NONE;
+		positions[value] = NONE;
+		size--;
+	}
+	
+	/**
+	 * @return the cards in the deck, as a set
+	 */
+	public CardSet getCardSet() {
+		long bits = 0;
+		for (int i=head; i<tail; i++) {
+			if (cards[i] != NONE)
+				bits |= 1L << cards[i];
+		}
+		return new CardSet(bits);
+	}
+	
+	/**
+	 * @return whether a card is in the deck
+	 */
+	public boolean contains(Card card) {
+		return positions[ card.getIntValue() ] != NONE;
 	}
 	
 	/**
 	 * add all cards from another deck
 	 */
 	public void addDeck(Deck o) {
-		cards.addAll(o.cards);
+		o.settle();
+		for (int i=o.head; i<o.tail; i++) {
+			if (o.cards[i] != NONE)
+				addCard( o.cardObjects[ o.cards[i] ] );
+		}
+	}
+	
+	/**
+	 * @return the number of cards in the deck
+	 */
+	public int size() {
+		return size;
+	}
+	
+	public boolean isLazyShuffle() {
+		return lazyShuffle;
+	}
+	
+	/**
+	 * whether shuffle() shuffles lazily, as the cards are dealt from the tail
+	 */
+	public void setLazyShuffle(boolean lazyShuffle) {
+		this.lazyShuffle = lazyShuffle;
+	}
+	
+	public ShuffleRandom getRandom() {
+		return random;
+	}
+	
+	public void setRandom(ShuffleRandom random) {
+		this.random = random;
 	}
 	
 	@Override
 	public String toString() {
-		String str="";
-		for (int i=0; i<cards.size(); i++)
-			str += cards.get(i) + " ";
-		return str;
+		settle();
+		StringBuilder str = new StringBuilder();
+		for (int i=head; i<tail; i++) {
+			if (cards[i] != NONE)
+				str.append( cardObjects[ cards[i] ] ).append(' ');
+		}
+		return str.toString();
 	}
 	
 	
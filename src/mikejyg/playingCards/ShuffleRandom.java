@@ -0,0 +1,45 @@
+/*
+	Copyright 2012 Junyang Gu
+
+	This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package mikejyg.playingCards;
+
+/**
+ * a source of random numbers for shuffling and dealing.
+ * 
+ * A generator is not shared between threads; each worker takes its own with split(), 
+ * so parallel runs do not contend on one generator, and stay reproducible from one master seed.
+ */
+public interface ShuffleRandom {
+	
+	/**
+	 * @return a uniformly distributed int in [0, bound)
+	 */
+	int nextInt(int bound);
+	
+	/**
+	 * restart the sequence from a seed
+	 */
+	void setSeed(long seed);
+	
+	/**
+	 * @return a new generator, with a sequence independent of the rest of this one's.
+	 * The result depends only on the state of this generator, so splitting in a fixed order
+	 * from a seeded generator is reproducible.
+	 */
+	ShuffleRandom split();
+	
+}
@@ -0,0 +1,52 @@
+/*
+	Copyright 2012 Junyang Gu
+
+	This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package mikejyg.playingCards;
+
+import java.util.SplittableRandom;
+
+/**
+ * a java.util.SplittableRandom as a ShuffleRandom
+ */
+public class SplittableShuffleRandom implements ShuffleRandom {
+	
+	private SplittableRandom random;
+	
+	public SplittableShuffleRandom(long seed) {
+		random = new SplittableRandom(seed);
+	}
+	
+	public SplittableShuffleRandom(SplittableRandom random) {
+		this.random = random;
+	}
+	
+	@Override
+	public int nextInt(int bound) {
+		return random.nextInt(bound);
+	}
+	
+	@Override
+	public void setSeed(long seed) {
+		random = new SplittableRandom(seed);
+	}
+	
+	@Override
+	public ShuffleRandom split() {
+		return new SplittableShuffleRandom( random.split() );
+	}
+	
+}
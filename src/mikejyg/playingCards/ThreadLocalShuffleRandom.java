@@ -0,0 +1,49 @@
+/*
+	Copyright 2012 Junyang Gu
+
+	This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package mikejyg.playingCards;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * the ThreadLocalRandom of the calling thread, as a ShuffleRandom. 
+ * It can not be seeded, so it is for runs that need not be reproduced.
+ */
+public class ThreadLocalShuffleRandom implements ShuffleRandom {
+	
+	@Override
+	public int nextInt(int bound) {
+		return ThreadLocalRandom.current().nextInt(bound);
+	}
+	
+	/**
+	 * not supported, ThreadLocalRandom can not be seeded
+	 */
+	@Override
+	public void setSeed(long seed) {
+		throw new UnsupportedOperationException("ThreadLocalRandom can not be seeded");
+	}
+	
+	/**
+	 * @return a generator for another thread; each thread has its own ThreadLocalRandom anyway
+	 */
+	@Override
+	public ShuffleRandom split() {
+		return new ThreadLocalShuffleRandom();
+	}
+	
+}
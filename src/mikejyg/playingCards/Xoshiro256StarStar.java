@@ -0,0 +1,217 @@
+/*
+	Copyright 2012 Junyang Gu
+
+	This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package mikejyg.playingCards;
+
+import java.util.Random;
+
+/**
+ * the xoshiro256** generator of Blackman and Vigna, 256 bits of state, period 2^256 - 1.
+ *
+ * jump() advances the sequence by 2^128 steps, and longJump() by 2^192 steps, 
+ * so streams for up to 2^64 workers can be cut from one seed, without overlap.
+ * split() hands the current stream to a new generator, and jumps this one past it.
+ */
+public class Xoshiro256StarStar implements ShuffleRandom {
+	
+	static private final long [] JUMP = {
+		0x180ec6d33cfd0abaL, 0xd5a61266f0c9392cL, 0xa9582618e03fc9aaL, 0x39abdc4529b1661cL };
+	
+	static private final long [] LONG_JUMP = {
+		0x76e15d3efefdcbbfL, 0xc5004e441c522fb3L, 0x77710069854ee241L, 0x39109bb02acbe635L };
+	
+	private long s0, s1, s2, s3;
+	
+	public Xoshiro256StarStar(long seed) {
+		setSeed(seed);
+	}
+	
+	/**
+	 * a generator with a given state, not all zero
+	 */
+	public Xoshiro256StarStar(long s0, long s1, long s2, long s3) {
+		if ( (s0 | s1 | s2 | s3) == 0 )
+			throw new IllegalArgumentException("all zero state");
+		this.s0 = s0;
+		this.s1 = s1;
+		this.s2 = s2;
+		this.s3 = s3;
+	}
+	
+	/**
+	 * a copy, at the same point of the sequence
+	 */
+	public Xoshiro256StarStar(Xoshiro256StarStar o) {
+		this(o.s0, o.s1, o.s2, o.s3);
+	}
+	
+	/**
+	 * @return the generator of a stream of a seed, the seeded generator jumped index times
+	 */
+	public static Xoshiro256StarStar stream(long seed, long index) {
+		Xoshiro256StarStar random = new Xoshiro256StarStar(seed);
+		for (long i=0; i<index; i++)
+			random.jump();
+		return random;
+	}
+	
+	/**
+	 * the state is filled from the seed by SplitMix64, as recommended by the authors
+	 */
+	@Override
+	public void setSeed(long seed) {
+		long x = seed;
+		s0 = mix64( x += 0x9e3779b97f4a7c15L );
+		s1 = mix64( x += 0x9e3779b97f4a7c15L );
+		s2 = mix64( x += 0x9e3779b97f4a7c15L );
+		s3 = mix64( x += 0x9e3779b97f4a7c15L );
+	}
+	
+	/**
+	 * the output function of SplitMix64
+	 */
+	static long mix64(long z) {
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+	
+	public long nextLong() {
+		long result = Long.rotateLeft(s1 * 5, 7) * 9;
+		long t = s1 << 17;
+		s2 ^= s0;
+		s3 ^= s1;
+		s1 ^= s2;
+		s0 ^= s3;
+		s2 ^= t;
+		s3 = Long.rotateLeft(s3, 45);
+		return result;
+	}
+	
+	/**
+	 * unbiased, by rejection, in the same way as java.util.Random, from the high 31 bits
+	 */
+	@Override
+	public int nextInt(int bound) {
+		if (bound <= 0)
+			throw new IllegalArgumentException("bound must be positive");
+		
+		int r = (int) (nextLong() >>> 33);
+		int m = bound - 1;
+		if ( (bound & m) == 0 )
+			return (int) ( (bound * (long) r) >> 31 );
+		
+		for (int u = r; u - (r = u % bound) + m < 0; )
+			u = (int) (nextLong() >>> 33);
+		return r;
+	}
+	
+	@Override
+	public ShuffleRandom split() {
+		Xoshiro256StarStar child = new Xoshiro256StarStar(this);
+		jump();
+		return child;
+	}
+	
+	/**
+	 * advance by 2^128 steps
+	 */
+	public void jump() {
+		jump(JUMP);
+	}
+	
+	/**
+	 * advance by 2^192 steps
+	 */
+	public void longJump() {
+		jump(LONG_JUMP);
+	}
+	
+	private void jump(long [] polynomial) {
+		long t0 = 0, t1 = 0, t2 = 0, t3 = 0;
+		for (long word : polynomial) {
+			for (int b=0; b<64; b++) {
+				if ( (word & (1L << b)) != 0 ) {
+					t0 ^= s0;
+					t1 ^= s1;
+					t2 ^= s2;
+					t3 ^= s3;
+				}
+				nextLong();
+			}
+		}
+		s0 = t0;
+		s1 = t1;
+		s2 = t2;
+		s3 = t3;
+	}
+	
+	///////////////////////////////////////////////
+	// test
+	
+	/**
+	 * checks the reference outputs, and the reproducibility of jumps and splits, 
+	 * and times nextInt() against java.util.Random.
+	 */
+	public static void main(String[] args) {
+		Xoshiro256StarStar random = new Xoshiro256StarStar(1, 2, 3, 4);
+		long [] expected = { 11520L, 0L, 1509978240L, 1215971899390074240L };
+		for (long e : expected) {
+			long v = random.nextLong();
+			if (v != e)
+				throw new Error("reference output mismatch: " + v + ", expected " + e);
+		}
+		
+		// a stream by index is the same as splitting in order
+		Xoshiro256StarStar master = new Xoshiro256StarStar(7);
+		for (int i=0; i<10; i++) {
+			ShuffleRandom child = master.split();
+			Xoshiro256StarStar byIndex = stream(7, i);
+			for (int k=0; k<100; k++) {
+				if ( child.nextInt(52) != byIndex.nextInt(52) )
+					throw new Error("stream " + i + " mismatch");
+			}
+		}
+		
+		// uniformity, roughly
+		int [] counts = new int[52];
+		int total = 5200000;
+		for (int i=0; i<total; i++)
+			counts[ master.nextInt(52) ]++;
+		for (int count : counts) {
+			if ( Math.abs(count - total / 52) > 2000 )
+				throw new Error("uneven count: " + count);
+		}
+		
+		long loopCount = 100000000;
+		int sink = 0;
+		long startTime = System.nanoTime();
+		for (long i=0; i<loopCount; i++)
+			sink += master.nextInt(52);
+		long xoshiroTime = System.nanoTime() - startTime;
+		
+		Random jdkRandom = new Random(1);
+		startTime = System.nanoTime();
+		for (long i=0; i<loopCount; i++)
+			sink += jdkRandom.nextInt(52);
+		long jdkTime = System.nanoTime() - startTime;
+		
+		System.out.println("ok, nextInt(52): xoshiro256** " + xoshiroTime / (loopCount / 1000) + " ps, Random " 
+				+ jdkTime / (loopCount / 1000) + " ps (" + sink + ")");
+	}
+	
+}
@@ -0,0 +1,364 @@
+/*
+	Copyright 2012 Junyang Gu
+
+	This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package mikejyg.texasHoldem;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import mikejyg.playingCards.Card;
+
+/**
+ * the strengths of hole card combos on a complete table, sorted by strength.
+ *
+ * Two weighted ranges are compared with one sweep over the sorted combos: the weight of the
+ * opponent's combos below, and at, each strength is summed, in total and per card, so the
+ * combos sharing a card with a hand are taken out in constant time.
+ *
+ * Strengths of all the 1326 combos on a table are kept in a least recently used cache,
+ * so repeated queries on the same table are not evaluated again.
+ * A cached instance is shared, and not set() again; the sums of a sweep are local to it,
+ * so concurrent sweeps on the same table do not wait on each other.
+ */
+public class BoardStrengths {
+
+	static private final int CACHE_TABLES = 256;
+
+	static private final int COMBO_BITS = 11;
+
+	static private final Map<Long, BoardStrengths> cache = new LinkedHashMap<Long, BoardStrengths>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Long, BoardStrengths> eldest) {
+			return size() > CACHE_TABLES;
+		}
+	};
+
+	static final int [] ALL_COMBOS = new int[HandRange.COMBOS_TOTAL];
+
+	static {
+		for (int i=0; i<ALL_COMBOS.length; i++)
+			ALL_COMBOS[i] = i;
+	}
+
+	private long tableMask;
+
+	// strength values, indexed by combo
+	private int [] strengths = new int[HandRange.COMBOS_TOTAL];
+
+	// combos not blocked by the table, in ascending order of strength
+	private int [] sortedCombos = new int[HandRange.COMBOS_TOTAL];
+	private int size;
+
+	// sort keys, strength and combo
+	private long [] keys = new long[HandRange.COMBOS_TOTAL];
+
+	// in the cache, so it must not be set() again
+	private boolean shared;
+
+	/**
+	 * an empty set of strengths, to be set()
+	 */
+	public BoardStrengths() {
+	}
+
+	/**
+	 * the strengths of all combos on a table
+	 * @param tableCards 5 cards
+	 */
+	public BoardStrengths(Card [] tableCards) {
+		HandState table = new HandState();
+		for (Card card : tableCards)
+			table.add(card);
+		set(table, ALL_COMBOS);
+	}
+
+	/**
+	 * @return the strengths of all combos on a table, from the cache if it is there.
+	 * It is shared, and can not be set() again.
+	 * @param tableMask the mask of 5 cards, as FastEvaluator.toMask()
+	 */
+	public static BoardStrengths get(long tableMask) {
+		synchronized (cache) {
+			BoardStrengths strengths = cache.get(tableMask);
+			if (strengths != null)
+				return strengths;
+		}
+
+		HandState table = new HandState();
+		for (long bits=tableMask; bits!=0; bits&=bits-1)
+			table.addMask( Long.lowestOneBit(bits) );
+
+		BoardStrengths strengths = new BoardStrengths();
+		strengths.set(table, ALL_COMBOS);
+		strengths.shared = true;
+
+		synchronized (cache) {
+			cache.put(tableMask, strengths);
+		}
+		return strengths;
+	}
+
+	/**
+	 * evaluate combos on a table, and sort them.
+	 * Combos sharing a card with the table are left out.
+	 * @param table a complete table, 5 cards, or 3 or 4 for the strengths so far
+	 * @param combos the combos to evaluate
+	 */
+	void set(HandState table, int [] combos) {
+		if (shared)
+			throw new IllegalStateException("a cached instance can not be set");
+		if (table.getCardsTotal() < 3 || table.getCardsTotal() > 5)
+			throw new IllegalArgumentException("3 to 5 table cards expected");
+
+		tableMask = table.getMask();
+		HandState work = new HandState();
+
+		size = 0;
+		for (int combo : combos) {
+			if ( (HandRange.getComboMask(combo) & tableMask) != 0 )
+				continue;
+			work.set(table);
+			work.add( HandRange.getComboCard(combo, 0) );
+			work.add( HandRange.getComboCard(combo, 1) );
+			strengths[combo] = work.evaluate();
+			keys[size++] = (long) strengths[combo] << COMBO_BITS | combo;
+		}
+
+		Arrays.sort(keys, 0, size);
+		for (int i=0; i<size; i++)
+			sortedCombos[i] = (int) keys[i] & ((1 << COMBO_BITS) - 1);
+	}
+
+	/**
+	 * compare two weighted ranges, in a linear sweep over the sorted combos.
+	 * The combos of the ranges must have been set().
+	 * The sums are allocated for the sweep, so an instance from get() is swept by many threads at once.
+	 *
+	 * @param weights0 weights of the first range, indexed by combo
+	 * @param weights1 weights of the second range, indexed by combo
+	 * @param equity receives the outcomes, each pair of combos weighted by the product of the weights
+	 */
+	public void sweep(int [] weights0, int [] weights1, Equity equity) {
+		long [] totalByCard = new long[Card.TOTAL_CARDS];
+		long [] belowByCard = new long[Card.TOTAL_CARDS];
+		long [] tiedByCard = new long[Card.TOTAL_CARDS];
+
+		// the weight of the second range, in total and per card
+		long total = 0;
+		for (int i=0; i<size; i++) {
+			int combo = sortedCombos[i];
+			int weight = weights1[combo];
+			total += weight;
+			totalByCard[ HandRange.getComboCard(combo, 0) ] += weight;
+			totalByCard[ HandRange.getComboCard(combo, 1) ] += weight;
+		}
+
+		// prefix sums of the second range, below the current strength, and at it
+		long below = 0;
+
+		long wins0 = 0, wins1 = 0, ties = 0;
+
+		for (int from=0; from<size; ) {
+			int strength = strengths[ sortedCombos[from] ];
+			int to = from;
+			long tied = 0;
+			for (; to<size && strengths[ sortedCombos[to] ] == strength; to++) {
+				int combo = sortedCombos[to];
+				int weight = weights1[combo];
+				tied += weight;
+				tiedByCard[ HandRange.getComboCard(combo, 0) ] += weight;
+				tiedByCard[ HandRange.getComboCard(combo, 1) ] += weight;
+			}
+
+			for (int i=from; i<to; i++) {
+				int combo = sortedCombos[i];
+				long weight = weights0[combo];
+				if (weight == 0)
+					continue;
+
+				// the same combo of the second range is taken out twice, by each of its cards
+				int card0 = HandRange.getComboCard(combo, 0);
+				int card1 = HandRange.getComboCard(combo, 1);
+				long self = weights1[combo];
+				long win = below - belowByCard[card0] - belowByCard[card1];
+				long tie = tied - tiedByCard[card0] - tiedByCard[card1] + self;
+				long all = total - totalByCard[card0] - totalByCard[card1] + self;
+
+				wins0 += weight * win;
+				ties += weight * tie;
+				wins1 += weight * (all - win - tie);
+			}
+
+			below += tied;
+			addBelow(from, to, belowByCard, tiedByCard);
+			from = to;
+		}
+
+		if (wins0 != 0)
+			equity.addShowdown(WIN0, wins0);
+		if (wins1 != 0)
+			equity.addShowdown(WIN1, wins1);
+		if (ties != 0)
+			equity.addShowdown(TIE, ties);
+	}
+
+	/**
+	 * count the outcomes of each combo set against a weighted range, in a linear sweep.
+	 *
+	 * @param weights weights of the range, indexed by combo
+	 * @param wins receives the weight of the range's combos below each combo, not sharing a card
+	 * @param ties receives the weight of the range's combos at each combo, not sharing a card
+	 */
+	public void sweepCombos(int [] weights, long [] wins, long [] ties) {
+		long [] belowByCard = new long[Card.TOTAL_CARDS];
+		long [] tiedByCard = new long[Card.TOTAL_CARDS];
+		long below = 0;
+
+		for (int from=0; from<size; ) {
+			int strength = strengths[ sortedCombos[from] ];
+			int to = from;
+			long tied = 0;
+			for (; to<size && strengths[ sortedCombos[to] ] == strength; to++) {
+				int combo = sortedCombos[to];
+				int weight = weights[combo];
+				tied += weight;
+				tiedByCard[ HandRange.getComboCard(combo, 0) ] += weight;
+				tiedByCard[ HandRange.getComboCard(combo, 1) ] += weight;
+			}
+
+			for (int i=from; i<to; i++) {
+				int combo = sortedCombos[i];
+				int card0 = HandRange.getComboCard(combo, 0);
+				int card1 = HandRange.getComboCard(combo, 1);
+				wins[combo] += below - belowByCard[card0] - belowByCard[card1];
+				ties[combo] += tied - tiedByCard[card0] - tiedByCard[card1] + weights[combo];
+			}
+
+			below += tied;
+			addBelow(from, to, belowByCard, tiedByCard);
+			from = to;
+		}
+	}
+
+	/**
+	 * move the per card sums of a group of combos from tied to below
+	 */
+	private void addBelow(int from, int to, long [] belowByCard, long [] tiedByCard) {
+		for (int i=from; i<to; i++) {
+			int combo = sortedCombos[i];
+			int card0 = HandRange.getComboCard(combo, 0);
+			int card1 = HandRange.getComboCard(combo, 1);
+			belowByCard[card0] += tiedByCard[card0];
+			belowByCard[card1] += tiedByCard[card1];
+			tiedByCard[card0] = 0;
+			tiedByCard[card1] = 0;
+		}
+	}
+
+	// strengths standing for the outcomes of a pair
+	static private final int [] WIN0 = {1, 0};
+	static private final int [] WIN1 = {0, 1};
+	static private final int [] TIE = {0, 0};
+
+	////////////////////////////
+	// getters
+
+	public long getTableMask() {
+		return tableMask;
+	}
+
+	/**
+	 * @return the number of combos set
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @param i the position in ascending order of strength
+	 */
+	public int getSortedCombo(int i) {
+		return sortedCombos[i];
+	}
+
+	public int getStrength(int combo) {
+		return strengths[combo];
+	}
+
+	///////////////////////////////////////////////
+	// test
+
+	/**
+	 * compares the sweep with comparing every pair of combos, on random tables and ranges.
+	 * arguments: seed, loop count
+	 */
+	public static void main(String[] args) {
+		long seed = args.length >= 1 ? Long.parseLong(args[0]) : 1;
+		int loopCount = args.length >= 2 ? Integer.parseInt(args[1]) : 1000;
+
+		Random random = new Random(seed);
+		long sweepTime = 0;
+		long pairTime = 0;
+
+		for (int cnt=0; cnt<loopCount; cnt++) {
+			long tableMask = 0;
+			while (Long.bitCount(tableMask) < 5)
+				tableMask |= FastEvaluator.toMask( random.nextInt(Card.TOTAL_CARDS) );
+
+			int [] weights0 = new int[HandRange.COMBOS_TOTAL];
+			int [] weights1 = new int[HandRange.COMBOS_TOTAL];
+			for (int i=0; i<HandRange.COMBOS_TOTAL; i++) {
+				if (random.nextInt(4) == 0)
+					weights0[i] = 1 + random.nextInt(100);
+				if (random.nextInt(3) == 0)
+					weights1[i] = 1 + random.nextInt(100);
+			}
+
+			long startTime = System.nanoTime();
+			BoardStrengths strengths = get(tableMask);
+			Equity equity = new Equity(2);
+			strengths.sweep(weights0, weights1, equity);
+			sweepTime += System.nanoTime() - startTime;
+
+			startTime = System.nanoTime();
+			long [] counts = new long[3];
+			for (int a=0; a<HandRange.COMBOS_TOTAL; a++) {
+				long maskA = HandRange.getComboMask(a);
+				if (weights0[a] == 0 || (maskA & tableMask) != 0)
+					continue;
+				for (int b=0; b<HandRange.COMBOS_TOTAL; b++) {
+					if ( weights1[b] == 0 || (HandRange.getComboMask(b) & (maskA | tableMask)) != 0 )
+						continue;
+					int diff = Integer.signum( strengths.getStrength(a) - strengths.getStrength(b) );
+					counts[1 - diff] += (long) weights0[a] * weights1[b];
+				}
+			}
+			pairTime += System.nanoTime() - startTime;
+
+			if ( equity.getWins(0) != counts[0] || equity.getTies(0) != counts[1] || equity.getWins(1) != counts[2] )
+				throw new Error("sweep mismatch, table mask " + Long.toHexString(tableMask));
+		}
+
+		System.out.println(loopCount + " tables ok, sweep " + sweepTime / loopCount / 1000 + " us, pairs "
+				+ pairTime / loopCount / 1000 + " us");
+	}
+
+}
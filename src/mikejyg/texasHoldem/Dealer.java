@@ -21,10 +21,13 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Observable;
 
 import mikejyg.playingCards.Card;
+import mikejyg.playingCards.CardSet;
 import mikejyg.playingCards.Deck;
+import mikejyg.texasHoldem.Score.Pattern;
 
 /**
  * this class deals cards to table and hands; It also scores them;
@@ -43,6 +46,12 @@ public class Dealer extends Observable {
 	
 	private Card [] tableCards = new Card[5];
 	
+	// cards out of play, not dealt
+	private CardSet deadCards = new CardSet();
+	
+	// evaluation states of the hands, updated as the cards are dealt
+	private HandState [] handStates;
+	
 	/**
 	 * The state of the dealer.
 	 * When in RIVER, the card dealing process is complete.
@@ -100,6 +109,8 @@ public class Dealer extends Observable {
 	}
 	
 	private void newDeal() {
+		deck.reset();
+		deck.removeCards(deadCards);
 		deck.shuffle();
 		dealHands();
 		dealerState = DealerState.PREFLOP;
@@ -107,9 +118,14 @@ public class Dealer extends Observable {
 	}
 	
 	private void dealHands() {
+		for (int j=0; j<handsTotal; j++) {
+			handStates[j].clear();
+		}
+		
 		for (int i=0; i<2; i++) {
 			for (int j=0; j<handsTotal; j++) {
 				handCards[j][i] = deck.removeTailCard();
+				handStates[j].add(handCards[j][i]);
 			}
 		}
 		setChanged();
@@ -117,27 +133,35 @@ public class Dealer extends Observable {
 
 	private void flop() {
 		for (int i=0; i<3; i++) {
-			tableCards[i] = deck.removeTailCard();
+			dealTableCard(i);
 		}
 		dealerState = DealerState.FLOP;
 		setChanged();
 	}
 	
 	private void turn() {
-		tableCards[3] = deck.removeTailCard();
+		dealTableCard(3);
 		dealerState = DealerState.TURN;
 		setChanged();
 	}
 	
 	private void river() {
-		tableCards[4] = deck.removeTailCard();
+		dealTableCard(4);
 		dealerState = DealerState.RIVER;
 		setChanged();
 	}
 	
+	private void dealTableCard(int idx) {
+		tableCards[idx] = deck.removeTailCard();
+		for (int j=0; j<handsTotal; j++) {
+			handStates[j].add(tableCards[idx]);
+		}
+	}
+	
 	public void clear() {
 		for (int i=0; i<getHandsTotal(); i++) {
 			Arrays.fill(handCards[i], null);
+			handStates[i].clear();
 		}
 
 		Arrays.fill(tableCards, null);
@@ -174,6 +198,11 @@ public class Dealer extends Observable {
 	public void setHandsTotal(int hands) {
 		this.handsTotal = hands;
 		handCards = new Card[getHandsTotal()][2];
+		
+		handStates = new HandState[getHandsTotal()];
+		for (int i=0; i<getHandsTotal(); i++) {
+			handStates[i] = new HandState();
+		}
 	}
 	
 	public boolean isCompleted() {
@@ -183,19 +212,23 @@ public class Dealer extends Observable {
 	private ArrayList<Score> scoreList = new ArrayList<Score>();
 
 	private HashMap<Integer, Score> handToScoreMap = new HashMap<Integer, Score>();
-	private HashMap<Score, Integer> scoreToHandMap = new HashMap<Score, Integer>();
+	
+	// tied scores are equal, so scores are mapped by identity
+	private IdentityHashMap<Score, Integer> scoreToHandMap = new IdentityHashMap<Score, Integer>();
 
-	private HashMap<Score, Integer> scoreToRankMap = new HashMap<Score, Integer>();
-	private HashMap<Score, Boolean> scoreToTiedMap = new HashMap<Score, Boolean>();
+	private IdentityHashMap<Score, Integer> scoreToRankMap = new IdentityHashMap<Score, Integer>();
+	private IdentityHashMap<Score, Boolean> scoreToTiedMap = new IdentityHashMap<Score, Boolean>();
 	
 	public void scoreHands() {
 		scoreList.clear();
-		Evaluator evaluator = new Evaluator();
+		scoreToHandMap.clear();
+		scoreToRankMap.clear();
+		scoreToTiedMap.clear();
+		
+		// the hand states hold the hand and table cards, as dealt street by street
 		for (int i=0; i<getHandsTotal(); i++) {
 			
-			Card [] cards = getCombinedCards(i);
-
-			Score score = evaluator.evalulate(cards);
+			Score score = new Score(handStates[i].evaluate(), tableCards, handCards[i]);
 			scoreList.add( score );
 			
 			handToScoreMap.put(i, score);
@@ -256,17 +289,6 @@ public class Dealer extends Observable {
 		setChanged();
 	}
 	
-	private Card [] getCombinedCards(int hand) {
-		Card [] cards = new Card[7];
-		for (int j=0; j<5; j++) {
-			cards[j] = getTableCards()[j];
-		}
-		for (int j=0; j<2; j++) {
-			cards[5+j] = getHandCards()[hand][j];
-		}
-		return cards;
-	}
-	
 	////////////////////////////////
 	// getters and setters
 	
@@ -278,6 +300,17 @@ public class Dealer extends Observable {
 		this.deck = deck;
 	}
 
+	public CardSet getDeadCards() {
+		return deadCards;
+	}
+
+	/**
+	 * cards out of play, taken out of the deck from the next deal on
+	 */
+	public void setDeadCards(CardSet deadCards) {
+		this.deadCards = deadCards;
+	}
+
 	public int getHandsTotal() {
 		return handsTotal;
 	}
@@ -286,16 +319,50 @@ public class Dealer extends Observable {
 		return handCards;
 	}
 
+	/**
+	 * the hand states are rebuilt from the cards, and the number of hands follows the array
+	 */
 	public void setHandCards(Card[][] handCards) {
 		this.handCards = handCards;
+		rebuildHandStates();
 	}
 
 	public Card[] getTableCards() {
 		return tableCards;
 	}
 
+	/**
+	 * the hand states are rebuilt from the cards
+	 */
 	public void setTableCards(Card[] tableCards) {
 		this.tableCards = tableCards;
+		rebuildHandStates();
+	}
+	
+	/**
+	 * rebuild the hand states from the hand and table cards, the ones not null
+	 */
+	private void rebuildHandStates() {
+		if (handStates.length != handCards.length) {
+			handsTotal = handCards.length;
+			handStates = new HandState[handsTotal];
+			for (int i=0; i<handsTotal; i++) {
+				handStates[i] = new HandState();
+			}
+		}
+		
+		for (int i=0; i<handsTotal; i++) {
+			handStates[i].clear();
+			for (Card card : handCards[i]) {
+				if (card != null)
+					handStates[i].add(card);
+			}
+			for (Card card : tableCards) {
+				if (card != null)
+					handStates[i].add(card);
+			}
+		}
+		scored = false;
 	}
 
 	public DealerState getDealerState() {
@@ -327,6 +394,20 @@ public class Dealer extends Observable {
 		return scored;
 	}
 
+	/**
+	 * the strength value of a hand with the cards dealt so far, at any street.
+	 */
+	public int getCurrentStrength(int hand) {
+		return handStates[hand].evaluate();
+	}
+	
+	/**
+	 * the best pattern of a hand with the cards dealt so far, at any street.
+	 */
+	public Pattern getCurrentPattern(int hand) {
+		return handStates[hand].getPattern();
+	}
+
 	/////////////////////////////////////////////////
 	// test
 	
@@ -334,8 +415,15 @@ public class Dealer extends Observable {
 
 		Dealer dealer = new Dealer();
 		
-		while (!dealer.isCompleted())
+		while (!dealer.isCompleted()) {
 			dealer.deal();
+			
+			String str = dealer.getDealerState() + ":";
+			for (int i=0; i<dealer.getHandsTotal(); i++) {
+				str += "  " + (i+1) + ": " + dealer.getCurrentPattern(i);
+			}
+			System.out.println(str);
+		}
 		
 		System.out.println(dealer.toString());
 		
@@ -0,0 +1,209 @@
+/*
+	Copyright 2012 Junyang Gu
+
+	This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package mikejyg.texasHoldem;
+
+/**
+ * the showdown outcomes of a number of players, over a number of runouts.
+ * 
+ * A player wins a showdown with the only best score, ties with a shared best score, 
+ * and loses otherwise, as ranked by Dealer.scoreHands().
+ * Equity counts a win as 1, and a tie among k players as 1/k.
+ * Its variance per showdown is tracked, for the error of Monte Carlo estimates.
+ * An enumeration of every runout is marked exact, and has no error.
+ */
+public class Equity {
+
+	private long trials;
+	
+	private long [] wins;
+	private long [] ties;
+	
+	// sum of the shares of ties, and of their squares
+	private double [] tieShares;
+	private double [] tieShareSquares;
+	
+	// all the runouts were enumerated
+	private boolean exact;
+	
+	public Equity(int playersTotal) {
+		wins = new long[playersTotal];
+		ties = new long[playersTotal];
+		tieShares = new double[playersTotal];
+		tieShareSquares = new double[playersTotal];
+	}
+	
+	/**
+	 * record a showdown
+	 * @param strengths strength values of the players
+	 */
+	public void addShowdown(int [] strengths) {
+		addShowdown(strengths, 1);
+	}
+	
+	/**
+	 * record a showdown that occurs a number of times
+	 */
+	public void addShowdown(int [] strengths, long times) {
+		int best = strengths[0];
+		int bestCnt = 1;
+		for (int i=1; i<strengths.length; i++) {
+			if (strengths[i] > best) {
+				best = strengths[i];
+				bestCnt = 1;
+			} else if (strengths[i] == best) {
+				bestCnt++;
+			}
+		}
+		
+		if (bestCnt == 1) {
+			for (int i=0; i<strengths.length; i++) {
+				if (strengths[i] == best) {
+					wins[i] += times;
+					break;
+				}
+			}
+		} else {
+			double share = 1.0 / bestCnt;
+			for (int i=0; i<strengths.length; i++) {
+				if (strengths[i] == best) {
+					ties[i] += times;
+					tieShares[i] += share * times;
+					tieShareSquares[i] += share * share * times;
+				}
+			}
+		}
+		
+		trials += times;
+	}
+	
+	/**
+	 * add the showdowns of another
+	 */
+	public void add(Equity o) {
+		for (int i=0; i<wins.length; i++) {
+			wins[i] += o.wins[i];
+			ties[i] += o.ties[i];
+			tieShares[i] += o.tieShares[i];
+			tieShareSquares[i] += o.tieShareSquares[i];
+		}
+		trials += o.trials;
+	}
+	
+	@Override
+	public String toString() {
+		String NL = System.getProperty("line.separator");
+		String str = trials + " trials";
+		for (int i=0; i<wins.length; i++) {
+			str += NL + (i+1) + ": win " + getWin(i) + ", tie " + getTie(i) + ", loss " + getLoss(i) 
+					+ ", equity " + getEquity(i);
+		}
+		return str;
+	}
+	
+	////////////////////////////
+	// getters and setters
+	
+	public int getPlayersTotal() {
+		return wins.length;
+	}
+	
+	public long getTrials() {
+		return trials;
+	}
+	
+	public boolean isExact() {
+		return exact;
+	}
+	
+	/**
+	 * mark the showdowns as all the runouts, with no sampling error
+	 */
+	public void setExact(boolean exact) {
+		this.exact = exact;
+	}
+	
+	public long getWins(int player) {
+		return wins[player];
+	}
+	
+	public long getTies(int player) {
+		return ties[player];
+	}
+	
+	/**
+	 * @return the fraction of showdowns won
+	 */
+	public double getWin(int player) {
+		return (double) wins[player] / trials;
+	}
+	
+	/**
+	 * @return the fraction of showdowns tied
+	 */
+	public double getTie(int player) {
+		return (double) ties[player] / trials;
+	}
+	
+	/**
+	 * @return the fraction of showdowns lost
+	 */
+	public double getLoss(int player) {
+		return (double) (trials - wins[player] - ties[player]) / trials;
+	}
+	
+	/**
+	 * @return the share of the pot won, on average
+	 */
+	public double getEquity(int player) {
+		return (wins[player] + tieShares[player]) / trials;
+	}
+	
+	/**
+	 * @return the variance of the pot share of a showdown.
+	 * When every showdown has the same outcome, e.g. a chop on the table, it is 0; the summed 
+	 * tie shares may then leave a rounding error below 0, which is cut off.
+	 */
+	public double getEquityVariance(int player) {
+		double mean = getEquity(player);
+		return Math.max(0, (wins[player] + tieShareSquares[player]) / trials - mean * mean);
+	}
+	
+	/**
+	 * @return the standard error of the equity, as a Monte Carlo estimate, or 0 if it is exact.
+	 * A sample of a single outcome has no variance, but does not prove the outcome fixed,
+	 * e.g. 2 losses in 10000 are often not seen. So the variance is taken as at least that of 
+	 * an outcome seen half a time, p = 1/(2 trials), a continuity correction as in the Wilson interval.
+	 */
+	public double getStandardError(int player) {
+		if (exact)
+			return 0;
+		double p = 0.5 / trials;
+		return Math.sqrt( Math.max(getEquityVariance(player), p * (1 - p)) / trials );
+	}
+	
+	/**
+	 * @return the largest standard error of all players
+	 */
+	public double getMaxStandardError() {
+		double maxError = 0;
+		for (int i=0; i<wins.length; i++)
+			maxError = Math.max(maxError, getStandardError(i));
+		return maxError;
+	}
+	
+}
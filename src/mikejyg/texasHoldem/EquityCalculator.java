@@ -0,0 +1,425 @@
+/*
+	Copyright 2012 Junyang Gu
+
+	This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package mikejyg.texasHoldem;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import mikejyg.playingCards.Card;
+import mikejyg.playingCards.CounterShuffleRandom;
+import mikejyg.playingCards.ShuffleRandom;
+
+/**
+ * all-in equity of known hands, with optional table cards already dealt and dead cards.
+ * 
+ * Monte Carlo trials deal the rest of the table cards at random, in parallel on a fork/join pool.
+ * The trials are split in chunks; chunk i draws from deal i of a counter based generator of
+ * the seed, and has its own counts, so a run is reproducible at any parallelism.
+ * 
+ * An adaptive simulation runs rounds of trials until the standard error of every player's
+ * equity is within a target, or a time budget runs out. Each round is cut to the time left,
+ * at the rate of the round before. A spot with no more runouts than a round is enumerated.
+ * 
+ * The exact equity enumerates every way to complete the table from the remaining cards,
+ * split by the first card dealt when there are enough runouts to be worth parallelizing.
+ * Each player's cards are kept with the table dealt so far, so a table card is added once
+ * per player, and the last card is only added for the evaluation.
+ * It answers up to 10 players.
+ */
+public class EquityCalculator {
+
+	static public final int MAX_PLAYERS = 10;
+	
+	static private final int CHUNK_TRIALS = 10000;
+	
+	// the largest round of an adaptive simulation
+	static private final int MAX_ROUND_CHUNKS = 64;
+	
+	// below this, runouts are enumerated on the calling thread
+	static private final long PARALLEL_RUNOUTS = 20000;
+	
+	private ForkJoinPool pool;
+	
+	public EquityCalculator(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+	
+	/**
+	 * the known cards of a query, and the cards left to deal
+	 */
+	static class Setup {
+		final int playersTotal;
+		
+		// card int values of the players' hands
+		final int [][] hands;
+		
+		// the table cards dealt
+		final HandState table = new HandState();
+		
+		// the number of table cards to deal
+		final int tableCardsToDeal;
+		
+		// card int values of the cards not dealt, and not dead
+		final int [] remainingCards;
+		
+		Setup(Card [][] handCards, Card [] tableCards, Card [] deadCards) {
+			if (tableCards.length > 5)
+				throw new IllegalArgumentException("more than 5 table cards");
+			if (handCards.length < 1 || handCards.length > MAX_PLAYERS)
+				throw new IllegalArgumentException("1 to " + MAX_PLAYERS + " hands expected");
+			
+			playersTotal = handCards.length;
+			hands = new int[playersTotal][];
+			
+			long usedMask = 0;
+			for (int i=0; i<playersTotal; i++) {
+				hands[i] = new int[handCards[i].length];
+				for (int j=0; j<handCards[i].length; j++) {
+					hands[i][j] = handCards[i][j].getIntValue();
+				}
+				usedMask = addUsed(usedMask, FastEvaluator.toMask(handCards[i]), handCards[i].length);
+			}
+			
+			for (Card card : tableCards) {
+				table.add(card);
+			}
+			usedMask = addUsed(usedMask, table.getMask(), tableCards.length);
+			
+			usedMask = addUsed(usedMask, FastEvaluator.toMask(deadCards), deadCards.length);
+			
+			tableCardsToDeal = 5 - tableCards.length;
+			
+			int remainingCnt = Card.TOTAL_CARDS - Long.bitCount(usedMask);
+			remainingCards = new int[remainingCnt];
+			int idx = 0;
+			for (int i=0; i<Card.TOTAL_CARDS; i++) {
+				if ( (usedMask & FastEvaluator.toMask(i)) == 0 )
+					remainingCards[idx++] = i;
+			}
+		}
+		
+		private static long addUsed(long usedMask, long mask, int cardsTotal) {
+			if ( Long.bitCount(mask) != cardsTotal || (usedMask & mask) != 0 )
+				throw new IllegalArgumentException("a card is used more than once");
+			return usedMask | mask;
+		}
+		
+		/**
+		 * evaluate the showdown with a complete table
+		 * @param work a working state
+		 * @param strengths receives the strengths of the players
+		 */
+		void showdown(HandState completeTable, HandState work, int [] strengths) {
+			for (int i=0; i<playersTotal; i++) {
+				work.set(completeTable);
+				for (int j=0; j<hands[i].length; j++)
+					work.add(hands[i][j]);
+				strengths[i] = work.evaluate();
+			}
+		}
+	}
+	
+	/**
+	 * Monte Carlo equity
+	 * 
+	 * @param handCards the cards of each player
+	 * @param tableCards the table cards already dealt, 0 to 5
+	 * @param deadCards cards known to be out of play
+	 */
+	public Equity simulate(Card [][] handCards, Card [] tableCards, Card [] deadCards, 
+			long trials, long seed) {
+		Setup setup = new Setup(handCards, tableCards, deadCards);
+		long chunks = (trials + CHUNK_TRIALS - 1) / CHUNK_TRIALS;
+		return pool.invoke( new SimulationTask(setup, trials, seed, 0, chunks) );
+	}
+	
+	/**
+	 * Monte Carlo equity, running until the standard error of each player's equity is at most 
+	 * the target error, or the time budget is used up.
+	 * The rounds of trials double in size, so a run stopped by precision with time to spare 
+	 * is reproducible. A round is cut to the chunks that fit in the time left, at the rate 
+	 * measured in the round before, so the budget is overrun by a chunk at most.
+	 * When there are no more runouts than the trials of the first round, they are enumerated,
+	 * and the equity is exact.
+	 * 
+	 * @param targetError the target standard error, e.g. 0.0025 for about +-0.5% at 95% confidence
+	 * @param timeBudgetMillis the time budget, in milliseconds
+	 * @return the equity; its trials and getMaxStandardError() give the iterations used and the error achieved
+	 */
+	public Equity simulate(Card [][] handCards, Card [] tableCards, Card [] deadCards, 
+			double targetError, long timeBudgetMillis, long seed) {
+		Setup setup = new Setup(handCards, tableCards, deadCards);
+		if ( combinations(setup.remainingCards.length, setup.tableCardsToDeal) <= CHUNK_TRIALS )
+			return enumerate(setup);
+		
+		long startTime = System.nanoTime();
+		long deadline = startTime + timeBudgetMillis * 1000000;
+		
+		Equity equity = new Equity(setup.playersTotal);
+		long chunk = 0;
+		long roundChunks = 1;
+		
+		while (true) {
+			long roundStart = System.nanoTime();
+			equity.add( pool.invoke( new SimulationTask(setup, Long.MAX_VALUE, seed, chunk, chunk + roundChunks) ) );
+			chunk += roundChunks;
+			
+			// the error is bounded away from 0, so a single outcome seen is not taken as fixed
+			long now = System.nanoTime();
+			if ( equity.getMaxStandardError() <= targetError || now >= deadline )
+				return equity;
+			
+			// the chunks that fit in the time left, at the rate of this round
+			long roundTime = Math.max(now - roundStart, 1);
+			double chunksLeft = (double) (deadline - now) * roundChunks / roundTime;
+			
+			// after the first round, each round doubles the trials so far
+			roundChunks = Math.min(chunk, MAX_ROUND_CHUNKS);
+			roundChunks = Math.max( 1, Math.min(roundChunks, (long) chunksLeft) );
+		}
+	}
+	
+	@SuppressWarnings("serial")
+	static class SimulationTask extends RecursiveTask<Equity> {
+		private final Setup setup;
+		private final long trials;
+		private final long seed;
+		private final long fromChunk;
+		private final long toChunk;
+		
+		SimulationTask(Setup setup, long trials, long seed, long fromChunk, long toChunk) {
+			this.setup = setup;
+			this.trials = trials;
+			this.seed = seed;
+			this.fromChunk = fromChunk;
+			this.toChunk = toChunk;
+		}
+		
+		@Override
+		protected Equity compute() {
+			if (toChunk - fromChunk > 1) {
+				long mid = (fromChunk + toChunk) / 2;
+				SimulationTask low = new SimulationTask(setup, trials, seed, fromChunk, mid);
+				low.fork();
+				Equity equity = new SimulationTask(setup, trials, seed, mid, toChunk).compute();
+				equity.add( low.join() );
+				return equity;
+			}
+			
+			Equity equity = new Equity(setup.playersTotal);
+			if (toChunk > fromChunk) {
+				long from = fromChunk * CHUNK_TRIALS;
+				long to = Math.min(from + CHUNK_TRIALS, trials);
+				simulate(setup, new CounterShuffleRandom(seed, fromChunk), to - from, equity);
+			}
+			return equity;
+		}
+	}
+	
+	/**
+	 * run trials on the calling thread
+	 */
+	static void simulate(Setup setup, ShuffleRandom random, long trials, Equity equity) {
+		int [] cards = setup.remainingCards.clone();
+		HandState table = new HandState();
+		HandState work = new HandState();
+		int [] strengths = new int[setup.playersTotal];
+		
+		for (long t=0; t<trials; t++) {
+			table.set(setup.table);
+			
+			// partial shuffle of the table cards needed
+			for (int i=0; i<setup.tableCardsToDeal; i++) {
+				int j = i + random.nextInt(cards.length - i);
+				int tmp = cards[i];
+				cards[i] = cards[j];
+				cards[j] = tmp;
+				table.add(cards[i]);
+			}
+			
+			setup.showdown(table, work, strengths);
+			equity.addShowdown(strengths);
+		}
+	}
+	
+	/**
+	 * exact equity, over all runouts of the table
+	 * 
+	 * @param handCards the cards of each player
+	 * @param tableCards the table cards already dealt, 0 to 5
+	 * @param deadCards cards known to be out of play
+	 */
+	public Equity enumerate(Card [][] handCards, Card [] tableCards, Card [] deadCards) {
+		return enumerate( new Setup(handCards, tableCards, deadCards) );
+	}
+	
+	private Equity enumerate(Setup setup) {
+		int firstCards = setup.remainingCards.length - setup.tableCardsToDeal + 1;
+		
+		Equity equity;
+		if (setup.tableCardsToDeal == 0 
+				|| combinations(setup.remainingCards.length, setup.tableCardsToDeal) < PARALLEL_RUNOUTS) {
+			equity = new Equity(setup.playersTotal);
+			enumerate(setup, 0, firstCards, equity);
+		} else {
+			equity = pool.invoke( new EnumerationTask(setup, 0, firstCards) );
+		}
+		
+		equity.setExact(true);
+		return equity;
+	}
+	
+	static long combinations(int n, int k) {
+		long c = 1;
+		for (int i=0; i<k; i++)
+			c = c * (n-i) / (i+1);
+		return c;
+	}
+	
+	/**
+	 * enumerates the runouts whose first card index is in [fromCard, toCard)
+	 */
+	@SuppressWarnings("serial")
+	static class EnumerationTask extends RecursiveTask<Equity> {
+		private final Setup setup;
+		private final int fromCard;
+		private final int toCard;
+		
+		EnumerationTask(Setup setup, int fromCard, int toCard) {
+			this.setup = setup;
+			this.fromCard = fromCard;
+			this.toCard = toCard;
+		}
+		
+		@Override
+		protected Equity compute() {
+			if (toCard - fromCard > 1) {
+				int mid = (fromCard + toCard) / 2;
+				EnumerationTask low = new EnumerationTask(setup, fromCard, mid);
+				low.fork();
+				Equity equity = new EnumerationTask(setup, mid, toCard).compute();
+				equity.add( low.join() );
+				return equity;
+			}
+			
+			Equity equity = new Equity(setup.playersTotal);
+			enumerate(setup, fromCard, toCard, equity);
+			return equity;
+		}
+	}
+	
+	/**
+	 * enumerate on the calling thread the runouts whose first card index is in [fromCard, toCard)
+	 */
+	static void enumerate(Setup setup, int fromCard, int toCard, Equity equity) {
+		int [] strengths = new int[setup.playersTotal];
+		
+		// the players' cards with the table, by the number of table cards dealt, but the last
+		HandState [][] players = new HandState[Math.max(setup.tableCardsToDeal, 1)][setup.playersTotal];
+		for (int d=0; d<players.length; d++) {
+			for (int p=0; p<setup.playersTotal; p++)
+				players[d][p] = new HandState();
+		}
+		for (int p=0; p<setup.playersTotal; p++) {
+			players[0][p].set(setup.table);
+			for (int j=0; j<setup.hands[p].length; j++)
+				players[0][p].add(setup.hands[p][j]);
+		}
+		
+		if (setup.tableCardsToDeal == 0) {
+			for (int p=0; p<setup.playersTotal; p++)
+				strengths[p] = players[0][p].evaluate();
+			equity.addShowdown(strengths);
+			return;
+		}
+		
+		for (int i=fromCard; i<toCard; i++) {
+			enumerate(setup, players, 0, i, strengths, equity);
+		}
+	}
+	
+	/**
+	 * deal a card, and the rest of the runouts after it
+	 * @param players states of the players, by the number of table cards dealt
+	 * @param dealt the number of cards dealt before this one
+	 * @param card index of the card to deal
+	 */
+	private static void enumerate(Setup setup, HandState [][] players, int dealt, int card, 
+			int [] strengths, Equity equity) {
+		
+		int [] cards = setup.remainingCards;
+		
+		if (dealt + 1 == setup.tableCardsToDeal) {
+			for (int p=0; p<setup.playersTotal; p++)
+				strengths[p] = players[dealt][p].evaluateWith(cards[card]);
+			equity.addShowdown(strengths);
+			return;
+		}
+		
+		for (int p=0; p<setup.playersTotal; p++) {
+			players[dealt+1][p].set(players[dealt][p]);
+			players[dealt+1][p].add(cards[card]);
+		}
+		
+		int toCard = cards.length - (setup.tableCardsToDeal - dealt - 1) + 1;
+		for (int i=card+1; i<toCard; i++) {
+			enumerate(setup, players, dealt+1, i, strengths, equity);
+		}
+	}
+	
+	///////////////////////////////////////////////
+	// test
+	
+	/**
+	 * arguments: hands separated by commas, e.g. "AS KS,QH QD", table cards, dead cards, 
+	 * trials, or "exact", or a target standard error such as 0.001, seed, time budget in ms
+	 */
+	public static void main(String[] args) {
+		String hands = args.length >= 1 ? args[0] : "AS KS,QH QD";
+		String table = args.length >= 2 ? args[1] : "";
+		String dead = args.length >= 3 ? args[2] : "";
+		String trials = args.length >= 4 ? args[3] : "1000000";
+		long seed = args.length >= 5 ? Long.parseLong(args[4]) : 1;
+		long timeBudget = args.length >= 6 ? Long.parseLong(args[5]) : 10000;
+		
+		String [] handStrs = hands.split(",");
+		Card [][] handCards = new Card[handStrs.length][];
+		for (int i=0; i<handStrs.length; i++)
+			handCards[i] = Card.parseCards(handStrs[i]);
+		
+		EquityCalculator calculator = new EquityCalculator( new ForkJoinPool() );
+		
+		long startTime = System.nanoTime();
+		Equity equity;
+		if (trials.equals("exact"))
+			equity = calculator.enumerate(handCards, Card.parseCards(table), Card.parseCards(dead));
+		else if (trials.contains("."))
+			equity = calculator.simulate(handCards, Card.parseCards(table), Card.parseCards(dead), 
+					Double.parseDouble(trials), timeBudget, seed);
+		else
+			equity = calculator.simulate(handCards, Card.parseCards(table), Card.parseCards(dead), 
+					Long.parseLong(trials), seed);
+		
+		System.out.println(equity);
+		// an exact result has no sampling error
+		if ( !equity.isExact() )
+			System.out.println( "standard error " + equity.getMaxStandardError() );
+		System.out.println( (System.nanoTime() - startTime) / 1000 + " us" );
+	}
+	
+}
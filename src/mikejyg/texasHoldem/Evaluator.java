@@ -25,6 +25,7 @@ import org.apache.log4j.Logger;
 
 
 import mikejyg.playingCards.Card;
+import mikejyg.playingCards.CardSet;
 import mikejyg.playingCards.Deck;
 import mikejyg.playingCards.Card.Rank;
 import mikejyg.texasHoldem.Score.Pattern;
@@ -32,12 +33,17 @@ import mikejyg.utilities.ArrayListUtils;
 
 /**
  * a class that evaluates a hand and produces a score
+ * 
+ * An instance keeps its working state in fields, so it is to be used by one thread at a time.
+ * The static evaluate() keeps no state, and can be called from any thread.
  *  
  */
 public class Evaluator {
 
 	static Logger logger = Logger.getLogger(Evaluator.class);
 	
+	static private final Card [] NO_CARDS = new Card[0];
+	
 	Score score;
 
 	private ArrayList<Card> remainingCards = new ArrayList<Card>();
@@ -48,19 +54,40 @@ public class Evaluator {
 	// working variables
 	private ArrayList<Card> cards;
 	private int totalCards;
-	private ArrayList<Card> highCards;
+	private ArrayList<Card> highCards = new ArrayList<Card>();
+	
+	// the cards evaluated, and the cards of the score, for the sanity check
+	private CardSet cardSet = new CardSet();
+	private CardSet checkSet = new CardSet();
+	
+	/**
+	 * evaluate a 7-card hand, without any shared state.
+	 * The score is computed by the FastEvaluator, with the high cards picked as evalulate() does.
+	 * It is a new score for every call, not referenced anywhere else.
+	 * @param cards 5 to 7 cards, each once
+	 */
+	public static Score evaluate(Card [] cards) {
+		if (cards.length < 5 || cards.length > 7)
+			throw new IllegalArgumentException("5 to 7 cards expected");
+		long mask = FastEvaluator.toMask(cards);
+		if (Long.bitCount(mask) != cards.length)
+			throw new IllegalArgumentException("a card is used more than once");
+		
+		return new Score( FastEvaluator.evaluate(mask), cards, NO_CARDS );
+	}
 	
 	public Score evalulate(Card [] cards) {
 		
 		// init fields
 		this.cards = new ArrayList<Card>(Arrays.asList(cards));
 		totalCards = cards.length;
+		cardSet.setBits( CardSet.toBits(cards) );
 		Collections.sort(this.cards);
 		logger.debug("evaluate: " + this.cards.toString());
 		
 		score = new Score();
 		
-		highCards = score.getHighCards();
+		highCards.clear();
 
 		remainingCards.clear();
 		remainingCards.addAll(this.cards);
@@ -73,6 +100,9 @@ public class Evaluator {
 			searchByRank();
 		}
 		
+		// the score keeps its own copy
+		score.setHighCards(highCards);
+		
 		logger.debug("score: " + score);
 		logger.debug("not used: " + remainingCards.toString());
 		
@@ -89,11 +119,13 @@ public class Evaluator {
 			throw new Error("sanity check failed!");
 		}
 		
-		ArrayList<Card> check = new ArrayList<Card>(highCards);
-		check.addAll(remainingCards);
-		Collections.sort(check);
+		checkSet.clear();
+		for (int i=0; i<highCards.size(); i++)
+			checkSet.add( highCards.get(i) );
+		for (int i=0; i<remainingCards.size(); i++)
+			checkSet.add( remainingCards.get(i) );
 		
-		if ( !check.equals(cards) ) {
+		if ( checkSet.size() != totalCards || !checkSet.equals(cardSet) ) {
 			throw new Error("sanity check failed!");
 		}
 	}
@@ -339,7 +371,8 @@ public class Evaluator {
 	// test
 	
 	public static void main(String[] args) {
-		Deck deck;
+		Deck deck = new Deck();
+		deck.setLazyShuffle(true);
 		long seed = 1;
 		int loopCount = 1000000;
 		
@@ -357,7 +390,7 @@ public class Evaluator {
 		for (int cnt=0; cnt<loopCount; cnt++) {
 			System.out.println(Long.toString(seed));
 			
-			deck = new Deck(seed++);
+			deck.reset(seed++);
 			deck.shuffle();
 			Card [] cards = new Card[7];
 			for (int i=0; i<7; i++) {
@@ -366,9 +399,8 @@ public class Evaluator {
 			}
 			System.out.println();
 
-			Evaluator evaluator = new Evaluator();
-			evaluator.evalulate(cards);
-			patternCnt[evaluator.getScore().getPattern().getIntValue()]++;
+			Score score = evaluate(cards);
+			patternCnt[score.getPattern().getIntValue()]++;
 		}
 		
 		for (int i=0; i<Pattern.TOTAL_PATTERNS; i++) {
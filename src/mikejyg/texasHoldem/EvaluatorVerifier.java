@@ -0,0 +1,509 @@
+/*
+	Copyright 2012 Junyang Gu
+
+	This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package mikejyg.texasHoldem;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+import mikejyg.playingCards.Card;
+import mikejyg.playingCards.CounterShuffleRandom;
+import mikejyg.playingCards.Deck;
+
+/**
+ * verifies evaluation engines against the Evaluator, hand by hand.
+ * 
+ * Hands come from the seeds of a golden log, from a random stream, or from an exhaustive
+ * enumeration. Random and exhaustive hands are verified in parallel, on a fork/join pool.
+ * The Evaluator runs its sanity check on every hand; a failure is reported as a mismatch.
+ * The first mismatching hands, in hand order, are kept for the report.
+ * Each chunk of hands counts its hands locally, and adds them to the total when it is done.
+ */
+public class EvaluatorVerifier {
+
+	/**
+	 * an evaluation engine under test
+	 */
+	public interface Engine {
+		String getName();
+		
+		/**
+		 * @return the strength value of a 7-card hand
+		 */
+		int evaluate(Card [] cards);
+	}
+	
+	/**
+	 * an evaluation engine under test that produces a full score. 
+	 * The pattern and the high cards, suits included, are checked as well as the strength.
+	 */
+	public interface ScoreEngine {
+		String getName();
+		
+		Score evaluate(Card [] cards);
+	}
+	
+	static private final int CHUNK_HANDS = 100000;
+	
+	private ArrayList<Engine> engines = new ArrayList<Engine>();
+	
+	private ArrayList<ScoreEngine> scoreEngines = new ArrayList<ScoreEngine>();
+	
+	private ForkJoinPool pool;
+	
+	private int maxReports = 10;
+	
+	/////////////////////////////
+	// results of the last verification
+	
+	private AtomicLong handsVerified = new AtomicLong();
+	private AtomicLong mismatches = new AtomicLong();
+	private TreeMap<Long, String> reports = new TreeMap<Long, String>();
+	
+	public EvaluatorVerifier(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+	
+	public void addEngine(Engine engine) {
+		engines.add(engine);
+	}
+	
+	public void addEngine(ScoreEngine engine) {
+		scoreEngines.add(engine);
+	}
+	
+	/**
+	 * add the engines of this package, which need no set up
+	 */
+	public void addDefaultEngines() {
+		addEngine(new Engine() {
+			@Override
+			public String getName() {
+				return "FastEvaluator";
+			}
+			@Override
+			public int evaluate(Card [] cards) {
+				return FastEvaluator.evaluate(cards);
+			}
+		});
+		
+		addEngine(new Engine() {
+			@Override
+			public String getName() {
+				return "HandState";
+			}
+			@Override
+			public int evaluate(Card [] cards) {
+				HandState state = new HandState();
+				for (Card card : cards)
+					state.add(card);
+				return state.evaluate();
+			}
+		});
+		
+		addEngine(new ScoreEngine() {
+			@Override
+			public String getName() {
+				return "Evaluator.evaluate";
+			}
+			@Override
+			public Score evaluate(Card [] cards) {
+				return Evaluator.evaluate(cards);
+			}
+		});
+	}
+	
+	public void addTableEngine(File file) throws IOException {
+		final TableEvaluator tableEvaluator = new TableEvaluator(file);
+		addEngine(new Engine() {
+			@Override
+			public String getName() {
+				return "TableEvaluator";
+			}
+			@Override
+			public int evaluate(Card [] cards) {
+				return tableEvaluator.evaluate(cards);
+			}
+		});
+	}
+	
+	private void reset() {
+		handsVerified.set(0);
+		mismatches.set(0);
+		synchronized (reports) {
+			reports.clear();
+		}
+	}
+	
+	/**
+	 * verify one hand against all engines. The hand is counted by the caller.
+	 * @param evaluator the reference, confined to the calling thread
+	 * @param handIdx the hand's index in the stream, for ordering the reports 
+	 */
+	private void verify(Evaluator evaluator, Card [] cards, long handIdx) {
+		Score score;
+		try {
+			score = evaluator.evalulate(cards);
+		} catch (Error e) {
+			report(handIdx, cards, "Evaluator " + e.getMessage());
+			return;
+		}
+		
+		for (int i=0; i<engines.size(); i++) {
+			Engine engine = engines.get(i);
+			int strength = engine.evaluate(cards);
+			if (strength != score.getStrength()) {
+				report(handIdx, cards, engine.getName() + ": " + FastEvaluator.toString(strength) 
+						+ ", Evaluator: " + score);
+			}
+		}
+		
+		for (int i=0; i<scoreEngines.size(); i++) {
+			ScoreEngine engine = scoreEngines.get(i);
+			Score engineScore = engine.evaluate(cards);
+			if ( engineScore.getStrength() != score.getStrength() || engineScore.getPattern() != score.getPattern()
+					|| !engineScore.getHighCards().equals(score.getHighCards()) ) {
+				report(handIdx, cards, engine.getName() + ": " + engineScore + ", Evaluator: " + score);
+			}
+		}
+	}
+	
+	private void report(long handIdx, Card [] cards, String message) {
+		mismatches.incrementAndGet();
+		
+		String str = "hand " + handIdx + ":";
+		for (Card card : cards)
+			str += " " + card;
+		str += ", " + message;
+		
+		synchronized (reports) {
+			if ( !reports.containsKey(handIdx) )
+				reports.put(handIdx, str);
+			if (reports.size() > maxReports)
+				reports.remove( reports.lastKey() );
+		}
+	}
+	
+	/////////////////////////////
+	// hand sources
+	
+	/**
+	 * verify the deals of the seeds in a log produced by Evaluator.main, e.g. golden/evalTest.log.
+	 * The deals are checked against the logged cards first.
+	 * @return the number of mismatches
+	 */
+	public long verifyGolden(File logFile) throws IOException {
+		reset();
+		
+		Evaluator evaluator = new Evaluator();
+		long handCnt = 0;
+		BufferedReader reader = new BufferedReader(new FileReader(logFile));
+		try {
+			Deck deck = new Deck();
+			deck.setLazyShuffle(true);
+			String line;
+			while ( (line = reader.readLine()) != null ) {
+				line = line.trim();
+				if ( !line.matches("[0-9]+") )
+					continue;
+				
+				long seed = Long.parseLong(line);
+				String cardsLine = reader.readLine();
+				if (cardsLine == null)
+					break;
+				
+				deck.reset(seed);
+				deck.shuffle();
+				Card [] cards = new Card[7];
+				String dealt = "";
+				for (int i=0; i<7; i++) {
+					cards[i] = deck.removeTailCard();
+					dealt += cards[i] + " ";
+				}
+				
+				if ( !dealt.trim().equals(cardsLine.trim()) ) {
+					report(seed, cards, "logged as " + cardsLine.trim());
+					continue;
+				}
+				
+				verify(evaluator, cards, seed);
+				handCnt++;
+			}
+		} finally {
+			reader.close();
+			handsVerified.addAndGet(handCnt);
+		}
+		
+		return mismatches.get();
+	}
+	
+	/**
+	 * verify random hands. Hand i is deal i of a counter based generator of the seed, 
+	 * so a run is reproducible at any parallelism, and can be cut into ranges of hands.
+	 * @return the number of mismatches
+	 */
+	public long verifyRandom(long seed, long hands) {
+		return verifyRandom(seed, 0, hands);
+	}
+	
+	/**
+	 * verify the random hands in [fromHand, toHand)
+	 * @return the number of mismatches
+	 */
+	public long verifyRandom(final long seed, final long fromHand, final long toHand) {
+		reset();
+		
+		long chunks = (toHand - fromHand + CHUNK_HANDS - 1) / CHUNK_HANDS;
+		pool.invoke(new ChunkAction(new Chunks() {
+			@Override
+			public void compute(long chunk) {
+				CounterShuffleRandom random = new CounterShuffleRandom(seed);
+				Deck deck = new Deck(random);
+				deck.setLazyShuffle(true);
+				Evaluator evaluator = new Evaluator();
+				Card [] cards = new Card[7];
+				
+				long from = fromHand + chunk * CHUNK_HANDS;
+				long to = Math.min(from + CHUNK_HANDS, toHand);
+				for (long handIdx=from; handIdx<to; handIdx++) {
+					dealRandom(deck, random, handIdx, cards);
+					verify(evaluator, cards, handIdx);
+				}
+				handsVerified.addAndGet(to - from);
+			}
+		}, 0, chunks));
+		
+		return mismatches.get();
+	}
+	
+	/**
+	 * deal a random hand, the 7 cards of a deal of a counter based generator
+	 * @param deck a deck drawing from the generator, shuffled lazily
+	 */
+	public static void dealRandom(Deck deck, CounterShuffleRandom random, long handIdx, Card [] cards) {
+		random.setDeal(handIdx);
+		deck.reset();
+		deck.shuffle();
+		deck.removeTailCards(cards);
+	}
+	
+	/**
+	 * @return a random hand, as verified by verifyRandom()
+	 */
+	public static Card [] dealRandom(long seed, long handIdx) {
+		CounterShuffleRandom random = new CounterShuffleRandom(seed);
+		Deck deck = new Deck(random);
+		deck.setLazyShuffle(true);
+		Card [] cards = new Card[7];
+		dealRandom(deck, random, handIdx, cards);
+		return cards;
+	}
+	
+	/**
+	 * verify all C(52,7) hands, or the ones whose lowest card int value is in [fromCard, toCard).
+	 * The hands are split by their two lowest cards, as PatternStatistics does, 
+	 * so there are about a thousand chunks, of up to C(50,5) hands.
+	 * @return the number of mismatches
+	 */
+	public long verifyExhaustive(int fromCard, int toCard) {
+		reset();
+		
+		// pairs of the two lowest cards, leaving at least 5 cards above
+		final ArrayList<int []> lowPairs = new ArrayList<int []>();
+		for (int c0=fromCard; c0<toCard && c0<Card.TOTAL_CARDS-6; c0++) {
+			for (int c1=c0+1; c1<Card.TOTAL_CARDS-5; c1++)
+				lowPairs.add( new int [] {c0, c1} );
+		}
+		
+		pool.invoke(new ChunkAction(new Chunks() {
+			@Override
+			public void compute(long chunk) {
+				int [] lowPair = lowPairs.get( (int) chunk );
+				Evaluator evaluator = new Evaluator();
+				Card [] cards = new Card[7];
+				
+				// the cards as a combination, in increasing order
+				int [] combination = new int[7];
+				combination[0] = lowPair[0];
+				for (int i=1; i<7; i++)
+					combination[i] = lowPair[1] + i - 1;
+				
+				long handIdx = ( (long) lowPair[0] * Card.TOTAL_CARDS + lowPair[1] ) << 32;
+				long handCnt = 0;
+				do {
+					for (int i=0; i<7; i++)
+						cards[i] = Card.of(combination[i]);
+					verify(evaluator, cards, handIdx + handCnt);
+					handCnt++;
+				} while ( nextCombination(combination, 2) );
+				
+				handsVerified.addAndGet(handCnt);
+			}
+		}, 0, lowPairs.size()));
+		
+		return mismatches.get();
+	}
+	
+	/**
+	 * advance to the next combination, with the first cards fixed
+	 * @param fixed the number of leading cards fixed
+	 * @return false if there is no more
+	 */
+	static boolean nextCombination(int [] combination, int fixed) {
+		int k = combination.length;
+		int i = k-1;
+		while ( i>=fixed && combination[i] == Card.TOTAL_CARDS - k + i )
+			i--;
+		if (i < fixed)
+			return false;
+		
+		combination[i]++;
+		for (int j=i+1; j<k; j++)
+			combination[j] = combination[j-1] + 1;
+		return true;
+	}
+	
+	/**
+	 * the work on one chunk of hands
+	 */
+	private interface Chunks {
+		void compute(long chunk);
+	}
+	
+	/**
+	 * a fork/join action over chunks [from, to), splitting down to single chunks
+	 */
+	@SuppressWarnings("serial")
+	private static class ChunkAction extends RecursiveAction {
+		private final Chunks chunks;
+		private final long from;
+		private final long to;
+		
+		ChunkAction(Chunks chunks, long from, long to) {
+			this.chunks = chunks;
+			this.from = from;
+			this.to = to;
+		}
+		
+		@Override
+		protected void compute() {
+			if (to - from <= 1) {
+				if (to > from)
+					chunks.compute(from);
+				return;
+			}
+			
+			long mid = (from + to) / 2;
+			invokeAll( new ChunkAction(chunks, from, mid), new ChunkAction(chunks, mid, to) );
+		}
+	}
+	
+	/////////////////////////////
+	// getters and setters
+	
+	public long getHandsVerified() {
+		return handsVerified.get();
+	}
+	
+	public long getMismatches() {
+		return mismatches.get();
+	}
+	
+	/**
+	 * the first mismatching hands of the last verification, in hand order
+	 */
+	public ArrayList<String> getReports() {
+		synchronized (reports) {
+			return new ArrayList<String>( reports.values() );
+		}
+	}
+	
+	public void setMaxReports(int maxReports) {
+		this.maxReports = maxReports;
+	}
+	
+	///////////////////////////////////////////////
+	// test
+	
+	/**
+	 * arguments: 
+	 *  golden [log file]
+	 *  random [seed] [hands] [first hand]
+	 *  deal [seed] [hand], deals and verifies one random hand
+	 *  exhaustive [from card] [to card]
+	 * The system property mikejyg.texasHoldem.table adds the TableEvaluator, using the given table file.
+	 */
+	public static void main(String[] args) throws IOException {
+		String mode = args.length >= 1 ? args[0] : "golden";
+		
+		EvaluatorVerifier verifier = new EvaluatorVerifier( new ForkJoinPool() );
+		verifier.addDefaultEngines();
+		
+		String tableFile = System.getProperty("mikejyg.texasHoldem.table");
+		if (tableFile != null)
+			verifier.addTableEngine( new File(tableFile) );
+		
+		long startTime = System.currentTimeMillis();
+		
+		if (mode.equals("golden")) {
+			verifier.verifyGolden( new File(args.length >= 2 ? args[1] : "golden/evalTest.log") );
+			
+		} else if (mode.equals("random")) {
+			long seed = args.length >= 2 ? Long.parseLong(args[1]) : 1;
+			long hands = args.length >= 3 ? Long.parseLong(args[2]) : 10000000;
+			long fromHand = args.length >= 4 ? Long.parseLong(args[3]) : 0;
+			verifier.verifyRandom(seed, fromHand, fromHand + hands);
+			
+		} else if (mode.equals("deal")) {
+			// one random hand, e.g. a reported mismatch
+			long seed = args.length >= 2 ? Long.parseLong(args[1]) : 1;
+			long handIdx = args.length >= 3 ? Long.parseLong(args[2]) : 0;
+			Card [] cards = dealRandom(seed, handIdx);
+			for (Card card : cards)
+				System.out.print(card + " ");
+			System.out.println();
+			verifier.verifyRandom(seed, handIdx, handIdx + 1);
+			
+		} else if (mode.equals("exhaustive")) {
+			int fromCard = args.length >= 2 ? Integer.parseInt(args[1]) : 0;
+			int toCard = args.length >= 3 ? Integer.parseInt(args[2]) : Card.TOTAL_CARDS - 6;
+			verifier.verifyExhaustive(fromCard, toCard);
+			
+		} else {
+			throw new IllegalArgumentException("unknown mode: " + mode);
+		}
+		
+		for (String report : verifier.getReports())
+			System.out.println(report);
+		
+		System.out.println(mode + ": " + verifier.getHandsVerified() + " hands, " 
+				+ verifier.getMismatches() + " mismatches, " 
+				+ (System.currentTimeMillis() - startTime) + " ms");
+		
+		if (verifier.getMismatches() != 0)
+			System.exit(1);
+	}
+	
+}
@@ -0,0 +1,385 @@
+/*
+	Copyright 2012 Junyang Gu
+
+	This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package mikejyg.texasHoldem;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+
+import mikejyg.playingCards.Card;
+import mikejyg.playingCards.Deck;
+import mikejyg.texasHoldem.Score.Pattern;
+
+/**
+ * an allocation free hand evaluator, working on a 64-bit card mask.
+ *
+ * The mask has a 16-bit lane per suit, lane index being the suit's int value.
+ * Within a lane, a card of rank r sets bit r, i.e. bits 2 to 14 are used.
+ *
+ * The result is a strength value, as Score.getStrength(), which packs the pattern and
+ * the ranks of the 5 high cards.
+ * The pattern and high card ordering follow the Evaluator exactly, including
+ * that two three of a kinds without a pair is scored as three of a kind.
+ *
+ * A hand has up to 7 distinct cards. With less than 5 cards, the missing high cards are ranked 0.
+ */
+public class FastEvaluator {
+
+	static final int RANK_MASK = 0x7ffc;
+
+	static private final int PATTERN_SHIFT = 20;
+
+	static public final int HAND_CARDS = 7;
+
+	/**
+	 * card masks, indexed by card int value
+	 */
+	static private final long [] CARD_MASKS = new long[Card.TOTAL_CARDS];
+
+	static {
+		for (int i=0; i<Card.TOTAL_CARDS; i++) {
+			int rank = i % 13 + 1;
+			if (rank == 1)
+				rank = 14;
+			CARD_MASKS[i] = 1L << ( (i / 13) * 16 + rank );
+		}
+	}
+
+	/////////////////////////////
+	// card masks
+
+	public static long toMask(Card card) {
+		return 1L << ( card.getSuit().getIntValue() * 16 + card.getRank().getIntValue() );
+	}
+
+	public static long toMask(Card [] cards) {
+		long mask = 0;
+		for (int i=0; i<cards.length; i++)
+			mask |= toMask(cards[i]);
+		return mask;
+	}
+
+	/**
+	 * @param cardValue the card int value, [0-51], as Card.getIntValue()
+	 */
+	public static long toMask(int cardValue) {
+		return CARD_MASKS[cardValue];
+	}
+
+	/**
+	 * @param cardValues card int values, as Card.getIntValue()
+	 */
+	public static long toMask(int [] cardValues, int offset, int length) {
+		long mask = 0;
+		for (int i=offset; i<offset+length; i++)
+			mask |= CARD_MASKS[cardValues[i]];
+		return mask;
+	}
+
+	/////////////////////////////
+	// evaluation
+
+	public static int evaluate(Card [] cards) {
+		return evaluate( toMask(cards) );
+	}
+
+	public static int evaluate(int [] cardValues, int offset, int length) {
+		return evaluate( toMask(cardValues, offset, length) );
+	}
+
+	public static int evaluate(long mask) {
+		int c = (int) mask & RANK_MASK;
+		int d = (int) (mask >>> 16) & RANK_MASK;
+		int h = (int) (mask >>> 32) & RANK_MASK;
+		int s = (int) (mask >>> 48) & RANK_MASK;
+
+		int ranks = c | d | h | s;
+		int quads = c & d & h & s;
+		int twoOrMore = (c & d) | (c & h) | (c & s) | (d & h) | (d & s) | (h & s);
+		int threeOrMore = (c & d & h) | (c & d & s) | (c & h & s) | (d & h & s);
+
+		return evaluate(mask, ranks, twoOrMore, threeOrMore, quads);
+	}
+
+	/**
+	 * evaluate with the rank multiplicities already known, as kept by HandState.
+	 * 
+	 * @param ranks ranks with at least one card
+	 * @param twoOrMore ranks with at least two cards
+	 * @param threeOrMore ranks with at least three cards
+	 * @param quads ranks with four cards
+	 */
+	static int evaluate(long mask, int ranks, int twoOrMore, int threeOrMore, int quads) {
+		// flush and four of a kind, full house are mutually exclusive,
+		// so it is safe to search flush first, as the Evaluator does
+		for (int suit=0; suit<4; suit++) {
+			int suitRanks = (int) (mask >>> (suit * 16)) & RANK_MASK;
+			if (Integer.bitCount(suitRanks) >= 5)
+				return evaluateFlush(suitRanks);
+		}
+
+		int trips = threeOrMore & ~quads;
+		int pairs = twoOrMore & ~threeOrMore;
+
+		if (quads != 0) {
+			int q = highestRank(quads);
+			return pack(Pattern.FOUR_OF_A_KIND, q, q, q, q, highestRank( ranks & ~(1 << q) ));
+		}
+
+		if (trips != 0 && pairs != 0) {
+			int t = highestRank(trips);
+			int p = highestRank(pairs);
+			return pack(Pattern.FULL_HOUSE, t, t, t, p, p);
+		}
+
+		int straight = straightHigh(ranks);
+		if (straight != 0)
+			return packStraight(Pattern.STRAIGHT, straight);
+
+		if (trips != 0) {
+			int t = highestRank(trips);
+			int others = ranks & ~(1 << t);
+			int k1 = highestRank(others);
+			int k2;
+			if ( (twoOrMore & (1 << k1)) != 0 )
+				k2 = k1;
+			else
+				k2 = highestRank( others & ~(1 << k1) );
+			return pack(Pattern.THREE_OF_A_KIND, t, t, t, k1, k2);
+		}
+
+		if (pairs != 0) {
+			int p1 = highestRank(pairs);
+			int others = ranks & ~(1 << p1);
+			int rest = pairs & ~(1 << p1);
+
+			if (rest != 0) {
+				int p2 = highestRank(rest);
+				others &= ~(1 << p2);
+				return pack(Pattern.TWO_PAIR, p1, p1, p2, p2, highestRank(others));
+			}
+
+			int k1 = highestRank(others);
+			others &= ~(1 << k1);
+			int k2 = highestRank(others);
+			others &= ~(1 << k2);
+			return pack(Pattern.PAIR, p1, p1, k1, k2, highestRank(others));
+		}
+
+		return packTop5(Pattern.HIGH_CARD, ranks);
+	}
+
+	/////////////////////////////
+	// batch evaluation
+
+	/**
+	 * evaluate hands of 7 cards each, laid out one after another.
+	 * 
+	 * @param cardValues card int values, as Card.getIntValue()
+	 * @param offset index of the first card of the first hand
+	 * @param hands number of hands
+	 * @param strengths receives one strength per hand
+	 * @param strengthOffset index of the strength of the first hand
+	 */
+	public static void evaluate(int [] cardValues, int offset, int hands, 
+			int [] strengths, int strengthOffset) {
+		long [] masks = CARD_MASKS;
+		for (int i=0; i<hands; i++, offset+=HAND_CARDS) {
+			long mask = masks[cardValues[offset]] | masks[cardValues[offset+1]] 
+					| masks[cardValues[offset+2]] | masks[cardValues[offset+3]] 
+					| masks[cardValues[offset+4]] | masks[cardValues[offset+5]] 
+					| masks[cardValues[offset+6]];
+			strengths[strengthOffset+i] = evaluate(mask);
+		}
+	}
+
+	/**
+	 * same as the int array version, reading from the buffer's position on.
+	 * The buffer's position is not changed.
+	 */
+	public static void evaluate(IntBuffer cardValues, int hands, int [] strengths, int strengthOffset) {
+		long [] masks = CARD_MASKS;
+		int offset = cardValues.position();
+		for (int i=0; i<hands; i++, offset+=HAND_CARDS) {
+			long mask = masks[cardValues.get(offset)] | masks[cardValues.get(offset+1)] 
+					| masks[cardValues.get(offset+2)] | masks[cardValues.get(offset+3)] 
+					| masks[cardValues.get(offset+4)] | masks[cardValues.get(offset+5)] 
+					| masks[cardValues.get(offset+6)];
+			strengths[strengthOffset+i] = evaluate(mask);
+		}
+	}
+
+	/**
+	 * same as the int array version, with one byte per card, reading from the buffer's position on.
+	 * The buffer's position is not changed.
+	 */
+	public static void evaluate(ByteBuffer cardValues, int hands, int [] strengths, int strengthOffset) {
+		long [] masks = CARD_MASKS;
+		int offset = cardValues.position();
+		for (int i=0; i<hands; i++, offset+=HAND_CARDS) {
+			long mask = masks[cardValues.get(offset)] | masks[cardValues.get(offset+1)] 
+					| masks[cardValues.get(offset+2)] | masks[cardValues.get(offset+3)] 
+					| masks[cardValues.get(offset+4)] | masks[cardValues.get(offset+5)] 
+					| masks[cardValues.get(offset+6)];
+			strengths[strengthOffset+i] = evaluate(mask);
+		}
+	}
+
+	/**
+	 * @param suitRanks rank bits of the flush suit, at least 5 bits set
+	 */
+	private static int evaluateFlush(int suitRanks) {
+		int straight = straightHigh(suitRanks);
+		if (straight == 14)
+			return packStraight(Pattern.ROYAL_FLUSH, straight);
+		else if (straight != 0)
+			return packStraight(Pattern.STRAIGHT_FLUSH, straight);
+		else
+			return packTop5(Pattern.FLUSH, suitRanks);
+	}
+
+	/**
+	 * @return the highest rank of a straight, 5 for the wheel, 0 if not found
+	 */
+	static int straightHigh(int ranks) {
+		// duplicate the ACE below the TWO
+		int r = ranks | ( (ranks >>> 14) & 1 ) << 1;
+		int runs = r & (r << 1) & (r << 2) & (r << 3) & (r << 4);
+		if (runs == 0)
+			return 0;
+		return highestRank(runs);
+	}
+
+	/**
+	 * @return the highest rank, 0 if there is none, for hands of less than 5 cards
+	 */
+	static int highestRank(int ranks) {
+		// bit 0 is never a rank bit
+		return 31 - Integer.numberOfLeadingZeros(ranks | 1);
+	}
+
+	private static int packStraight(Pattern pattern, int high) {
+		// the ACE of a wheel is the last high card, ranked 14
+		int low = high == 5 ? 14 : high-4;
+		return pack(pattern, high, high-1, high-2, high-3, low);
+	}
+
+	private static int packTop5(Pattern pattern, int ranks) {
+		int strength = pattern.getIntValue();
+		for (int i=0; i<5; i++) {
+			int r = highestRank(ranks);
+			ranks &= ~(1 << r);
+			strength = strength << 4 | r;
+		}
+		return strength;
+	}
+
+	private static int pack(Pattern pattern, int r0, int r1, int r2, int r3, int r4) {
+		return pattern.getIntValue() << PATTERN_SHIFT | r0 << 16 | r1 << 12 | r2 << 8 | r3 << 4 | r4;
+	}
+
+	/////////////////////////////
+	// strength values
+
+	public static Pattern getPattern(int strength) {
+		return Pattern.getPattern(strength >>> PATTERN_SHIFT);
+	}
+
+	/**
+	 * @param idx high card index, [0-4], from high to low
+	 * @return rank int value of the high card
+	 */
+	public static int getHighCardRank(int strength, int idx) {
+		return (strength >>> ( (4-idx) * 4 )) & 0xf;
+	}
+
+	/**
+	 * the strength value of a score produced by the Evaluator
+	 */
+	public static int toStrength(Score score) {
+		return score.getStrength();
+	}
+
+	public static String toString(int strength) {
+		String str = getPattern(strength).toString() + ", [";
+		for (int i=0; i<5; i++) {
+			if (i!=0)
+				str += ", ";
+			str += Card.Rank.getRank( getHighCardRank(strength, i) ).getSymbol();
+		}
+		return str + "]";
+	}
+
+	///////////////////////////////////////////////
+	// test
+
+	/**
+	 * evaluates the same deals as Evaluator.main, comparing against the Evaluator.
+	 */
+	public static void main(String[] args) {
+		long seed = 1;
+		int loopCount = 1000000;
+
+		if (args.length>=1) {
+			seed = Long.parseLong(args[0]);
+		}
+
+		if (args.length>=2) {
+			loopCount = Integer.parseInt(args[1]);
+		}
+
+		int mismatches = 0;
+
+		// for the batch check
+		int [] cardValues = new int[loopCount * HAND_CARDS];
+		int [] expected = new int[loopCount];
+
+		for (int cnt=0; cnt<loopCount; cnt++, seed++) {
+			Deck deck = new Deck(seed);
+			deck.shuffle();
+			Card [] cards = new Card[7];
+			for (int i=0; i<7; i++) {
+				cards[i] = deck.removeTailCard();
+				cardValues[cnt * HAND_CARDS + i] = cards[i].getIntValue();
+			}
+
+			Score score = new Evaluator().evalulate(cards);
+			int strength = evaluate(cards);
+			expected[cnt] = strength;
+
+			if ( strength != toStrength(score) ) {
+				mismatches++;
+				System.out.println("mismatch, seed " + seed + ": " + score + " vs " + toString(strength));
+			}
+		}
+
+		System.out.println(loopCount + " hands, " + mismatches + " mismatches");
+
+		int [] strengths = new int[loopCount];
+		long startTime = System.nanoTime();
+		evaluate(cardValues, 0, loopCount, strengths, 0);
+		long elapsed = System.nanoTime() - startTime;
+
+		mismatches = 0;
+		for (int i=0; i<loopCount; i++) {
+			if (strengths[i] != expected[i])
+				mismatches++;
+		}
+		System.out.println("batch: " + mismatches + " mismatches, " + elapsed / 1000000 + " ms");
+	}
+
+}
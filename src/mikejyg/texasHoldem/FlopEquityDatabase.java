@@ -0,0 +1,445 @@
+/*
+	Copyright 2012 Junyang Gu
+
+	This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package mikejyg.texasHoldem;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Logger;
+
+import mikejyg.playingCards.Card;
+
+/**
+ * the strength of every hole card combo on each of the 1755 flops up to suit isomorphism.
+ *
+ * For a canonical flop, as HandIndexer of 1 round of 3 cards, and a combo in the suits of the
+ * canonical flop, the file has the number of random opponent hands beaten and tied on the flop,
+ * the number of runouts and opponent hands won and tied by the river,
+ * and the distribution of the river equity over the runouts, as a histogram of HISTOGRAM_BINS bins.
+ * Combos sharing a card with the flop have zeros.
+ *
+ * The opponent is a uniform random hand, which is also the uniform range against itself:
+ * a range of every combo at the same weight is a random hand, so one set of counts serves both.
+ *
+ * The file is built by a long batch job, in parallel across flops. Each finished flop is saved
+ * to a partial file, and marked in a progress file, so a stopped build resumes where it was.
+ * The finished file is memory mapped, as the TableEvaluator.
+ */
+public class FlopEquityDatabase {
+
+	static Logger logger = Logger.getLogger(FlopEquityDatabase.class);
+
+	static private final int MAGIC = 0x464c4551;	// "FLEQ"
+	static private final int VERSION = 2;
+	static private final int HEADER_INTS = 4;
+
+	static public final HandIndexer FLOPS = new HandIndexer(3);
+
+	static private final int FLOPS_TOTAL = (int) FLOPS.size();
+
+	static private final int COMBOS = HandRange.COMBOS_TOTAL;
+
+	/**
+	 * the number of equal width bins of the river equity histogram
+	 */
+	static public final int HISTOGRAM_BINS = 10;
+
+	// flop wins, flop ties, wins, ties, river equity histogram
+	static private final int COMBO_INTS = 4 + HISTOGRAM_BINS;
+
+	static private final int FLOP_BYTES = COMBOS * COMBO_INTS * 4;
+
+	/**
+	 * the number of opponent hands of a combo on the flop
+	 */
+	static public final int FLOP_OPPONENTS = (int) EquityCalculator.combinations(Card.TOTAL_CARDS - 5, 2);
+
+	/**
+	 * the number of runouts and opponent hands of a combo by the river
+	 */
+	static public final int SHOWDOWNS = FLOP_OPPONENTS * (int) EquityCalculator.combinations(Card.TOTAL_CARDS - 7, 2);
+
+	/**
+	 * the number of runouts of a combo, the sum of its histogram
+	 */
+	static public final int RUNOUTS = FLOP_OPPONENTS;
+
+	/**
+	 * the number of opponent hands of a combo on the river
+	 */
+	static private final int RIVER_OPPONENTS = (int) EquityCalculator.combinations(Card.TOTAL_CARDS - 7, 2);
+
+	static private final int [] UNIT_WEIGHTS = new int[COMBOS];
+
+	static private final int [][] SUIT_PERMUTATIONS = new int[24][];
+
+	static {
+		Arrays.fill(UNIT_WEIGHTS, 1);
+
+		int idx = 0;
+		for (int a=0; a<4; a++)
+			for (int b=0; b<4; b++)
+				for (int c=0; c<4; c++)
+					for (int d=0; d<4; d++)
+						if (a != b && a != c && a != d && b != c && b != d && c != d)
+							SUIT_PERMUTATIONS[idx++] = new int [] {a, b, c, d};
+	}
+
+	private IntBuffer table;
+
+	/**
+	 * map the table from a file, made by build()
+	 */
+	public FlopEquityDatabase(File file) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		MappedByteBuffer buffer;
+		try {
+			buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+		} finally {
+			// the mapping stays valid after the channel is closed
+			raf.close();
+		}
+
+		IntBuffer ints = buffer.asIntBuffer();
+		if ( ints.limit() != HEADER_INTS + FLOPS_TOTAL * COMBOS * COMBO_INTS
+				|| ints.get(0) != MAGIC || ints.get(1) != VERSION
+				|| ints.get(2) != FLOPS_TOTAL || ints.get(3) != COMBOS ) {
+			throw new IOException("invalid flop equity file: " + file);
+		}
+
+		ints.position(HEADER_INTS);
+		table = ints.slice();
+	}
+
+	/////////////////////////////
+	// lookup
+
+	/**
+	 * map a flop and a hand to the canonical flop
+	 * @return the index of the canonical flop, and the combo in its suits
+	 */
+	public static int [] canonicalize(Card [] flopCards, Card [] handCards) {
+		int [] flop = new int[3];
+		for (int i=0; i<3; i++)
+			flop[i] = flopCards[i].getIntValue();
+
+		int flopIndex = (int) FLOPS.index(flop);
+		long canonicalMask = FastEvaluator.toMask( FLOPS.unindex(flopIndex), 0, 3 );
+
+		// a permutation of suits taking the flop to the canonical one
+		for (int [] permutation : SUIT_PERMUTATIONS) {
+			long mask = 0;
+			for (int i=0; i<3; i++)
+				mask |= FastEvaluator.toMask( permute(flop[i], permutation) );
+			if (mask != canonicalMask)
+				continue;
+
+			int combo = HandRange.comboIndex( permute(handCards[0].getIntValue(), permutation),
+					permute(handCards[1].getIntValue(), permutation) );
+			return new int [] { flopIndex, combo };
+		}
+
+		throw new Error("no suit permutation to the canonical flop");
+	}
+
+	private static int permute(int cardValue, int [] permutation) {
+		return permutation[cardValue / 13] * 13 + cardValue % 13;
+	}
+
+	public int getFlopWins(int flop, int combo) {
+		return table.get( (flop * COMBOS + combo) * COMBO_INTS );
+	}
+
+	public int getFlopTies(int flop, int combo) {
+		return table.get( (flop * COMBOS + combo) * COMBO_INTS + 1 );
+	}
+
+	public int getWins(int flop, int combo) {
+		return table.get( (flop * COMBOS + combo) * COMBO_INTS + 2 );
+	}
+
+	public int getTies(int flop, int combo) {
+		return table.get( (flop * COMBOS + combo) * COMBO_INTS + 3 );
+	}
+
+	/**
+	 * @param bin from 0, for river equities in [0, 1/HISTOGRAM_BINS), to HISTOGRAM_BINS-1, including 1
+	 */
+	public int getHistogram(int flop, int combo, int bin) {
+		return table.get( (flop * COMBOS + combo) * COMBO_INTS + 4 + bin );
+	}
+
+	/**
+	 * @return the share of random opponent hands beaten on the flop, ties counting half
+	 */
+	public double getFlopStrength(Card [] flopCards, Card [] handCards) {
+		int [] idx = canonicalize(flopCards, handCards);
+		return ( getFlopWins(idx[0], idx[1]) + getFlopTies(idx[0], idx[1]) / 2.0 ) / FLOP_OPPONENTS;
+	}
+
+	/**
+	 * @return the equity against a random opponent hand, by the river
+	 */
+	public double getEquity(Card [] flopCards, Card [] handCards) {
+		int [] idx = canonicalize(flopCards, handCards);
+		return ( getWins(idx[0], idx[1]) + getTies(idx[0], idx[1]) / 2.0 ) / SHOWDOWNS;
+	}
+
+	/**
+	 * @return the share of runouts in each bin of the river equity against a random opponent hand
+	 */
+	public double [] getEquityDistribution(Card [] flopCards, Card [] handCards) {
+		int [] idx = canonicalize(flopCards, handCards);
+		double [] distribution = new double[HISTOGRAM_BINS];
+		for (int bin=0; bin<HISTOGRAM_BINS; bin++)
+			distribution[bin] = (double) getHistogram(idx[0], idx[1], bin) / RUNOUTS;
+		return distribution;
+	}
+
+	/////////////////////////////
+	// building
+
+	/**
+	 * enumerate every flop on a pool, and save the table to a file.
+	 * The table is built in file.part, with the finished flops marked in file.progress;
+	 * a build stopped for any reason continues from the finished flops.
+	 */
+	public static void build(File file, ForkJoinPool pool) throws IOException {
+		File partFile = new File(file.getPath() + ".part");
+		File progressFile = new File(file.getPath() + ".progress");
+
+		RandomAccessFile part = new RandomAccessFile(partFile, "rw");
+		RandomAccessFile progress = new RandomAccessFile(progressFile, "rw");
+		try {
+			part.setLength( (long) HEADER_INTS * 4 + (long) FLOPS_TOTAL * FLOP_BYTES );
+			progress.setLength(FLOPS_TOTAL);
+
+			byte [] done = new byte[FLOPS_TOTAL];
+			progress.readFully(done);
+			int doneCnt = 0;
+			for (byte b : done)
+				doneCnt += b;
+			logger.info("building flop equities: " + file + ", " + doneCnt + " of " + FLOPS_TOTAL + " flops done");
+
+			pool.invoke( new BuildTask(part.getChannel(), progress.getChannel(), done, 0, FLOPS_TOTAL,
+					new AtomicInteger(doneCnt)) );
+
+			ByteBuffer header = ByteBuffer.allocate(HEADER_INTS * 4);
+			header.putInt(MAGIC).putInt(VERSION).putInt(FLOPS_TOTAL).putInt(COMBOS);
+			header.flip();
+			part.getChannel().write(header, 0);
+			part.getChannel().force(true);
+		} finally {
+			part.close();
+			progress.close();
+		}
+
+		Files.move(partFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+		progressFile.delete();
+	}
+
+	/**
+	 * enumerates the flops in [fromFlop, toFlop) not done
+	 */
+	@SuppressWarnings("serial")
+	static class BuildTask extends RecursiveAction {
+		private final FileChannel part;
+		private final FileChannel progress;
+		private final byte [] done;
+		private final int fromFlop;
+		private final int toFlop;
+		private final AtomicInteger doneCnt;
+
+		BuildTask(FileChannel part, FileChannel progress, byte [] done, int fromFlop, int toFlop,
+				AtomicInteger doneCnt) {
+			this.part = part;
+			this.progress = progress;
+			this.done = done;
+			this.fromFlop = fromFlop;
+			this.toFlop = toFlop;
+			this.doneCnt = doneCnt;
+		}
+
+		@Override
+		protected void compute() {
+			if (toFlop - fromFlop > 1) {
+				int mid = (fromFlop + toFlop) / 2;
+				invokeAll( new BuildTask(part, progress, done, fromFlop, mid, doneCnt),
+						new BuildTask(part, progress, done, mid, toFlop, doneCnt) );
+				return;
+			}
+
+			if (done[fromFlop] != 0)
+				return;
+
+			ByteBuffer buffer = ByteBuffer.allocate(FLOP_BYTES);
+			enumerate(fromFlop, buffer.asIntBuffer());
+
+			try {
+				// the flop is on disk before it is marked done
+				long position = (long) HEADER_INTS * 4 + (long) fromFlop * FLOP_BYTES;
+				while ( buffer.hasRemaining() )
+					part.write(buffer, position + buffer.position());
+				part.force(false);
+				progress.write(ByteBuffer.wrap(new byte [] {1}), fromFlop);
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+
+			int cnt = doneCnt.incrementAndGet();
+			if (cnt % 100 == 0)
+				logger.info(cnt + " of " + FLOPS_TOTAL + " flops");
+		}
+	}
+
+	/**
+	 * count the outcomes of every combo on a canonical flop
+	 * @param out receives the counts of each combo
+	 */
+	static void enumerate(int flop, IntBuffer out) {
+		int [] flopCards = FLOPS.unindex(flop);
+		HandState flopState = new HandState();
+		for (int card : flopCards)
+			flopState.add(card);
+
+		long [] flopWins = new long[COMBOS];
+		long [] flopTies = new long[COMBOS];
+		long [] wins = new long[COMBOS];
+		long [] ties = new long[COMBOS];
+		int [][] histograms = new int[COMBOS][HISTOGRAM_BINS];
+		long [] riverWins = new long[COMBOS];
+		long [] riverTies = new long[COMBOS];
+
+		BoardStrengths strengths = new BoardStrengths();
+		strengths.set(flopState, BoardStrengths.ALL_COMBOS);
+		strengths.sweepCombos(UNIT_WEIGHTS, flopWins, flopTies);
+
+		HandState turnState = new HandState();
+		HandState riverState = new HandState();
+		for (int turn=0; turn<Card.TOTAL_CARDS; turn++) {
+			if ( (flopState.getMask() & FastEvaluator.toMask(turn)) != 0 )
+				continue;
+			turnState.set(flopState);
+			turnState.add(turn);
+
+			for (int river=turn+1; river<Card.TOTAL_CARDS; river++) {
+				if ( (flopState.getMask() & FastEvaluator.toMask(river)) != 0 )
+					continue;
+				riverState.set(turnState);
+				riverState.add(river);
+
+				strengths.set(riverState, BoardStrengths.ALL_COMBOS);
+				Arrays.fill(riverWins, 0);
+				Arrays.fill(riverTies, 0);
+				strengths.sweepCombos(UNIT_WEIGHTS, riverWins, riverTies);
+
+				for (int combo=0; combo<COMBOS; combo++) {
+					if ( (riverState.getMask() & HandRange.getComboMask(combo)) != 0 )
+						continue;
+					wins[combo] += riverWins[combo];
+					ties[combo] += riverTies[combo];
+					// the equity in halves of an opponent hand, to stay in integers
+					long halves = 2 * riverWins[combo] + riverTies[combo];
+					int bin = (int) Math.min(HISTOGRAM_BINS - 1, halves * HISTOGRAM_BINS / (2 * RIVER_OPPONENTS));
+					histograms[combo][bin]++;
+				}
+			}
+		}
+
+		for (int combo=0; combo<COMBOS; combo++) {
+			out.put( (int) flopWins[combo] );
+			out.put( (int) flopTies[combo] );
+			out.put( (int) wins[combo] );
+			out.put( (int) ties[combo] );
+			out.put( histograms[combo] );
+		}
+	}
+
+	///////////////////////////////////////////////
+	// test
+
+	/**
+	 * builds the file if it is not finished, then compares random flops and hands with the RangeEquityCalculator.
+	 * arguments: file, seed, loop count
+	 */
+	public static void main(String[] args) throws IOException {
+		File file = new File(args.length >= 1 ? args[0] : "flop.eq");
+		long seed = args.length >= 2 ? Long.parseLong(args[1]) : 1;
+		int loopCount = args.length >= 3 ? Integer.parseInt(args[2]) : 10;
+
+		ForkJoinPool pool = new ForkJoinPool();
+		if ( !file.exists() ) {
+			long startTime = System.currentTimeMillis();
+			build(file, pool);
+			System.out.println("built in " + (System.currentTimeMillis() - startTime) / 1000 + " s");
+		}
+
+		FlopEquityDatabase database = new FlopEquityDatabase(file);
+		RangeEquityCalculator calculator = new RangeEquityCalculator(pool);
+		HandRange anyHand = HandRange.parse("100%");
+		Random random = new Random(seed);
+
+		for (int cnt=0; cnt<loopCount; cnt++) {
+			int [] deck = new int[Card.TOTAL_CARDS];
+			for (int i=0; i<deck.length; i++)
+				deck[i] = i;
+			Card [] cards = new Card[5];
+			for (int i=0; i<5; i++) {
+				int j = i + random.nextInt(deck.length - i);
+				int tmp = deck[i];
+				deck[i] = deck[j];
+				deck[j] = tmp;
+				cards[i] = Card.of(deck[i]);
+			}
+			Card [] flop = { cards[0], cards[1], cards[2] };
+			Card [] hand = { cards[3], cards[4] };
+
+			HandRange handRange = new HandRange();
+			handRange.setWeight( HandRange.comboIndex(deck[3], deck[4]), 100 );
+			double expected = calculator.enumerate(handRange, anyHand, flop, new Card[0]).getEquity(0);
+			double equity = database.getEquity(flop, hand);
+
+			double [] distribution = database.getEquityDistribution(flop, hand);
+
+			System.out.println(Arrays.toString(flop) + " " + Arrays.toString(hand) + ": flop strength "
+					+ database.getFlopStrength(flop, hand) + ", equity " + equity
+					+ ", distribution " + Arrays.toString(distribution));
+			if ( Math.abs(equity - expected) > 1e-9 )
+				throw new Error("mismatch, expected " + expected);
+
+			double sum = 0;
+			for (double share : distribution)
+				sum += share;
+			if ( Math.abs(sum - 1) > 1e-9 )
+				throw new Error("the distribution does not add up to 1: " + sum);
+		}
+	}
+
+}
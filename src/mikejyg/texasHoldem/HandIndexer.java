@@ -0,0 +1,538 @@
+/*
+	Copyright 2012 Junyang Gu
+
+	This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package mikejyg.texasHoldem;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import mikejyg.playingCards.Card;
+
+/**
+ * a dense index of hands up to suit isomorphism.
+ *
+ * Cards are dealt in rounds, e.g. 2 hole cards, 3 on the flop, 1 on the turn and 1 on the river.
+ * Hands that differ only by a permutation of the suits, e.g. AsKs and AhKh, have the same index,
+ * and every index in [0, size()) is a hand, so tables keyed by the index have no holes.
+ *
+ * Within a suit, the ranks dealt in each round are the suit's hand. Its profile is the number
+ * of its cards in each round. The suits are sorted by profile, then by hand, and the index is
+ * the offset of the configuration of profiles, plus the multisets of hands of the suits
+ * sharing a profile, in mixed radix.
+ *
+ * unindex() gives the canonical hand of an index, with the suits in sorted order.
+ */
+public class HandIndexer {
+
+	static private final int RANKS = 13;
+	static private final int SUITS = 4;
+
+	// bits per round of a profile key
+	static private final int PROFILE_BITS = 4;
+
+	static private final long [][] BINOMIALS = new long[RANKS + 1][RANKS + 1];
+
+	static {
+		for (int n=0; n<=RANKS; n++) {
+			BINOMIALS[n][0] = 1;
+			for (int k=1; k<=n; k++)
+				BINOMIALS[n][k] = BINOMIALS[n-1][k-1] + BINOMIALS[n-1][k];
+		}
+	}
+
+	static public final HandIndexer PREFLOP = new HandIndexer(2);
+	static public final HandIndexer FLOP = new HandIndexer(2, 3);
+	static public final HandIndexer TURN = new HandIndexer(2, 3, 1);
+	static public final HandIndexer RIVER = new HandIndexer(2, 3, 1, 1);
+
+	private final int [] cardsPerRound;
+	private final int cardsTotal;
+
+	/**
+	 * a configuration: the profiles of the suits in descending order, and the number of hands
+	 */
+	static class Configuration {
+		final int [] profiles = new int[SUITS];
+
+		// the number of hands of a suit with each profile
+		final long [] suitHands = new long[SUITS];
+
+		// the index of the first hand
+		long offset;
+		long size;
+	}
+
+	private final List<Configuration> configurations = new ArrayList<Configuration>();
+
+	// configurations, by the key of their profiles
+	private final Map<Long, Configuration> configurationMap = new HashMap<Long, Configuration>();
+
+	private final long size;
+
+	/**
+	 * @param cardsPerRound the number of cards dealt in each round, up to 4 rounds
+	 */
+	public HandIndexer(int... cardsPerRound) {
+		if (cardsPerRound.length == 0 || cardsPerRound.length > 4)
+			throw new IllegalArgumentException("1 to 4 rounds expected");
+
+		this.cardsPerRound = cardsPerRound.clone();
+		int total = 0;
+		for (int cards : cardsPerRound) {
+			if (cards < 1 || cards > RANKS)
+				throw new IllegalArgumentException("invalid cards in a round: " + cards);
+			total += cards;
+		}
+		if (total > Card.TOTAL_CARDS)
+			throw new IllegalArgumentException("too many cards: " + total);
+		cardsTotal = total;
+
+		enumerateConfigurations(new int[SUITS], new int[cardsPerRound.length], 0);
+
+		long offset = 0;
+		for (Configuration configuration : configurations) {
+			configuration.offset = offset;
+			configuration.size = 1;
+			for (int s=0; s<SUITS; ) {
+				int m = sameProfiles(configuration.profiles, s);
+				configuration.suitHands[s] = suitHands( configuration.profiles[s] );
+				configuration.size *= multisets(configuration.suitHands[s], m);
+				s += m;
+			}
+			offset += configuration.size;
+			configurationMap.put( profilesKey(configuration.profiles), configuration );
+		}
+		size = offset;
+	}
+
+	/**
+	 * enumerate the profiles of the suits, from the given suit on, in descending order
+	 * @param counts the cards dealt so far, by round
+	 */
+	private void enumerateConfigurations(int [] profiles, int [] counts, int suit) {
+		if (suit == SUITS) {
+			for (int r=0; r<cardsPerRound.length; r++) {
+				if (counts[r] != cardsPerRound[r])
+					return;
+			}
+			Configuration configuration = new Configuration();
+			System.arraycopy(profiles, 0, configuration.profiles, 0, SUITS);
+			configurations.add(configuration);
+			return;
+		}
+
+		enumerateProfiles(profiles, counts, suit, 0, 0);
+	}
+
+	private void enumerateProfiles(int [] profiles, int [] counts, int suit, int round, int suitCards) {
+		if (round == cardsPerRound.length) {
+			if (suit > 0 && compareProfiles(profiles[suit], profiles[suit-1]) > 0)
+				return;
+			enumerateConfigurations(profiles, counts, suit + 1);
+			return;
+		}
+
+		// larger counts first, so configurations are in descending order
+		int maxCards = Math.min(cardsPerRound[round] - counts[round], RANKS - suitCards);
+		for (int n=maxCards; n>=0; n--) {
+			int saved = profiles[suit];
+			profiles[suit] = setCount(profiles[suit], round, n);
+			counts[round] += n;
+			enumerateProfiles(profiles, counts, suit, round + 1, suitCards + n);
+			counts[round] -= n;
+			profiles[suit] = saved;
+		}
+	}
+
+	/////////////////////////////
+	// profiles
+
+	/**
+	 * a profile has the count of the first round in the highest bits, so profiles compare as ints
+	 */
+	private int getCount(int profile, int round) {
+		return profile >>> ( (cardsPerRound.length - 1 - round) * PROFILE_BITS ) & ((1 << PROFILE_BITS) - 1);
+	}
+
+	private int setCount(int profile, int round, int n) {
+		int shift = (cardsPerRound.length - 1 - round) * PROFILE_BITS;
+		return profile & ~(((1 << PROFILE_BITS) - 1) << shift) | n << shift;
+	}
+
+	private static int compareProfiles(int profile0, int profile1) {
+		return profile0 < profile1 ? -1 : profile0 == profile1 ? 0 : 1;
+	}
+
+	private static long profilesKey(int [] profiles) {
+		long key = 0;
+		for (int s=0; s<SUITS; s++)
+			key = key << 16 | profiles[s];
+		return key;
+	}
+
+	/**
+	 * @return the number of suits from the given one with the same profile
+	 */
+	private static int sameProfiles(int [] profiles, int suit) {
+		int m = 1;
+		while (suit + m < SUITS && profiles[suit + m] == profiles[suit])
+			m++;
+		return m;
+	}
+
+	/**
+	 * @return the number of hands of a suit with a profile
+	 */
+	private long suitHands(int profile) {
+		long hands = 1;
+		int ranksLeft = RANKS;
+		for (int r=0; r<cardsPerRound.length; r++) {
+			int n = getCount(profile, r);
+			hands *= BINOMIALS[ranksLeft][n];
+			ranksLeft -= n;
+		}
+		return hands;
+	}
+
+	/////////////////////////////
+	// indexing
+
+	/**
+	 * @param cardValues card int values, as Card.getIntValue(), in the order of the rounds
+	 */
+	public long index(int [] cardValues) {
+		if (cardValues.length != cardsTotal)
+			throw new IllegalArgumentException(cardsTotal + " cards expected");
+
+		// ranks of each suit and round
+		int [][] rankSets = new int[SUITS][cardsPerRound.length];
+		int [] used = new int[SUITS];
+		int idx = 0;
+		for (int r=0; r<cardsPerRound.length; r++) {
+			for (int i=0; i<cardsPerRound[r]; i++, idx++) {
+				int suit = cardValues[idx] / RANKS;
+				int bit = 1 << (cardValues[idx] % RANKS);
+				if ( (used[suit] & bit) != 0 )
+					throw new IllegalArgumentException("a card is used more than once");
+				used[suit] |= bit;
+				rankSets[suit][r] |= bit;
+			}
+		}
+
+		// sort keys: the profile, then the hand of the suit
+		long [] keys = new long[SUITS];
+		for (int s=0; s<SUITS; s++) {
+			int profile = 0;
+			for (int r=0; r<cardsPerRound.length; r++)
+				profile = setCount(profile, r, Integer.bitCount(rankSets[s][r]));
+			keys[s] = (long) profile << 40 | suitHandIndex(rankSets[s]);
+		}
+		Arrays.sort(keys);
+
+		int [] profiles = new int[SUITS];
+		long [] suitHandIndexes = new long[SUITS];
+		for (int s=0; s<SUITS; s++) {
+			profiles[s] = (int) (keys[SUITS - 1 - s] >>> 40);
+			suitHandIndexes[s] = keys[SUITS - 1 - s] & ((1L << 40) - 1);
+		}
+
+		Configuration configuration = configurationMap.get( profilesKey(profiles) );
+		long index = 0;
+		for (int s=0; s<SUITS; ) {
+			int m = sameProfiles(profiles, s);
+			long multisets = multisets(configuration.suitHands[s], m);
+			index = index * multisets + multisetIndex(suitHandIndexes, s, m);
+			s += m;
+		}
+
+		return configuration.offset + index;
+	}
+
+	public long index(Card [] cards) {
+		int [] cardValues = new int[cards.length];
+		for (int i=0; i<cards.length; i++)
+			cardValues[i] = cards[i].getIntValue();
+		return index(cardValues);
+	}
+
+	/**
+	 * the index of the ranks of a suit, by round, each round as a combination of the ranks left
+	 */
+	private long suitHandIndex(int [] rankSets) {
+		long index = 0;
+		long radix = 1;
+		int used = 0;
+		int ranksLeft = RANKS;
+		for (int r=0; r<rankSets.length; r++) {
+			int n = Integer.bitCount(rankSets[r]);
+
+			// colex index of the ranks, numbered among the ranks not used in earlier rounds
+			long colex = 0;
+			int i = 1;
+			for (int bits=rankSets[r]; bits!=0; bits&=bits-1, i++) {
+				int rank = Integer.numberOfTrailingZeros(bits);
+				int position = rank - Integer.bitCount( used & ((1 << rank) - 1) );
+				colex += BINOMIALS[position][i];
+			}
+
+			index += colex * radix;
+			radix *= BINOMIALS[ranksLeft][n];
+			ranksLeft -= n;
+			used |= rankSets[r];
+		}
+		return index;
+	}
+
+	/**
+	 * @param indexes m indexes from the given position, in descending order
+	 * @return the index of the multiset
+	 */
+	private static long multisetIndex(long [] indexes, int from, int m) {
+		long index = 0;
+		for (int t=0; t<m; t++)
+			index += binomial(indexes[from + t] + m - 1 - t, m - t);
+		return index;
+	}
+
+	/**
+	 * @return the number of multisets of m of n items
+	 */
+	private static long multisets(long n, int m) {
+		return binomial(n + m - 1, m);
+	}
+
+	private static long binomial(long n, int k) {
+		if (k < 0 || n < k)
+			return 0;
+		long c = 1;
+		for (int i=0; i<k; i++)
+			c = c * (n - i) / (i + 1);
+		return c;
+	}
+
+	/////////////////////////////
+	// unindexing
+
+	/**
+	 * @return the canonical hand of an index, card int values in the order of the rounds
+	 */
+	public int [] unindex(long index) {
+		if (index < 0 || index >= size)
+			throw new IllegalArgumentException("invalid index: " + index);
+
+		// the last configuration with an offset not above the index
+		int low = 0, high = configurations.size() - 1;
+		while (low < high) {
+			int mid = (low + high + 1) / 2;
+			if (configurations.get(mid).offset <= index)
+				low = mid;
+			else
+				high = mid - 1;
+		}
+		Configuration configuration = configurations.get(low);
+		index -= configuration.offset;
+
+		// the multiset of each group, from the last one
+		long [] suitHandIndexes = new long[SUITS];
+		for (int s=SUITS; s>0; ) {
+			int first = s - 1;
+			while (first > 0 && configuration.profiles[first - 1] == configuration.profiles[s - 1])
+				first--;
+			int m = s - first;
+			long multisets = multisets(configuration.suitHands[first], m);
+			unindexMultiset(index % multisets, suitHandIndexes, first, m);
+			index /= multisets;
+			s = first;
+		}
+
+		int [] cardValues = new int[cardsTotal];
+		int [] roundOffsets = new int[cardsPerRound.length];
+		for (int r=1; r<cardsPerRound.length; r++)
+			roundOffsets[r] = roundOffsets[r-1] + cardsPerRound[r-1];
+
+		for (int s=0; s<SUITS; s++) {
+			int [] rankSets = unindexSuitHand(suitHandIndexes[s], configuration.profiles[s]);
+			for (int r=0; r<cardsPerRound.length; r++) {
+				for (int bits=rankSets[r]; bits!=0; bits&=bits-1)
+					cardValues[ roundOffsets[r]++ ] = s * RANKS + Integer.numberOfTrailingZeros(bits);
+			}
+		}
+
+		return cardValues;
+	}
+
+	/**
+	 * @return the canonical hand of an index
+	 */
+	public Card [] unindexCards(long index) {
+		int [] cardValues = unindex(index);
+		Card [] cards = new Card[cardValues.length];
+		for (int i=0; i<cards.length; i++)
+			cards[i] = Card.of(cardValues[i]);
+		return cards;
+	}
+
+	private static void unindexMultiset(long index, long [] indexes, int from, int m) {
+		for (int t=0; t<m; t++) {
+			int k = m - t;
+			// the largest j with C(j, k) not above the index
+			long j = k - 1;
+			while ( binomial(j + 1, k) <= index )
+				j++;
+			index -= binomial(j, k);
+			indexes[from + t] = j - (m - 1 - t);
+		}
+	}
+
+	private int [] unindexSuitHand(long index, int profile) {
+		int [] rankSets = new int[cardsPerRound.length];
+		int used = 0;
+		int ranksLeft = RANKS;
+		for (int r=0; r<cardsPerRound.length; r++) {
+			int n = getCount(profile, r);
+			long radix = BINOMIALS[ranksLeft][n];
+			long colex = index % radix;
+			index /= radix;
+
+			// positions among the ranks not used in earlier rounds
+			int positions = 0;
+			for (int i=n; i>0; i--) {
+				int position = i - 1;
+				while ( BINOMIALS[position + 1][i] <= colex )
+					position++;
+				colex -= BINOMIALS[position][i];
+				positions |= 1 << position;
+			}
+
+			// back to ranks
+			int position = 0;
+			for (int rank=0; rank<RANKS; rank++) {
+				if ( (used & (1 << rank)) != 0 )
+					continue;
+				if ( (positions & (1 << position)) != 0 )
+					rankSets[r] |= 1 << rank;
+				position++;
+			}
+
+			used |= rankSets[r];
+			ranksLeft -= n;
+		}
+		return rankSets;
+	}
+
+	/**
+	 * @return the canonical hand of the hand given
+	 */
+	public int [] canonicalize(int [] cardValues) {
+		return unindex( index(cardValues) );
+	}
+
+	////////////////////////////
+	// getters
+
+	/**
+	 * @return the number of hands up to suit isomorphism
+	 */
+	public long size() {
+		return size;
+	}
+
+	public int getCardsTotal() {
+		return cardsTotal;
+	}
+
+	public int getRounds() {
+		return cardsPerRound.length;
+	}
+
+	///////////////////////////////////////////////
+	// test
+
+	/**
+	 * checks that indexes are dense, and the same for hands differing by suits.
+	 * arguments: seed, loop count
+	 */
+	public static void main(String[] args) {
+		long seed = args.length >= 1 ? Long.parseLong(args[0]) : 1;
+		int loopCount = args.length >= 2 ? Integer.parseInt(args[1]) : 1000000;
+
+		HandIndexer [] indexers = { PREFLOP, FLOP, TURN, RIVER };
+		long [] expectedSizes = { 169, 1286792, 55190538, 2428287420L };
+
+		for (int i=0; i<indexers.length; i++) {
+			HandIndexer indexer = indexers[i];
+			System.out.println(indexer.getCardsTotal() + " cards: " + indexer.size() + " hands, "
+					+ indexer.configurations.size() + " configurations");
+			if (indexer.size() != expectedSizes[i])
+				throw new Error("unexpected size: " + indexer.size());
+		}
+
+		// every index of the smaller indexers is a hand with that index
+		long startTime = System.currentTimeMillis();
+		for (HandIndexer indexer : new HandIndexer [] { PREFLOP, FLOP }) {
+			for (long index=0; index<indexer.size(); index++) {
+				if ( indexer.index( indexer.unindex(index) ) != index )
+					throw new Error("round trip failed at " + index);
+			}
+		}
+		System.out.println("round trips in " + (System.currentTimeMillis() - startTime) + " ms");
+
+		// random hands, with their suits permuted
+		Random random = new Random(seed);
+		startTime = System.currentTimeMillis();
+		for (int cnt=0; cnt<loopCount; cnt++) {
+			HandIndexer indexer = indexers[ random.nextInt(indexers.length) ];
+			int [] cards = randomCards(random, indexer.getCardsTotal());
+			long index = indexer.index(cards);
+
+			int [] suits = {0, 1, 2, 3};
+			for (int i=SUITS-1; i>0; i--) {
+				int j = random.nextInt(i + 1);
+				int tmp = suits[i];
+				suits[i] = suits[j];
+				suits[j] = tmp;
+			}
+			int [] permuted = new int[cards.length];
+			for (int i=0; i<cards.length; i++)
+				permuted[i] = suits[cards[i] / RANKS] * RANKS + cards[i] % RANKS;
+
+			if ( indexer.index(permuted) != index || indexer.index( indexer.unindex(index) ) != index )
+				throw new Error("index mismatch: " + Arrays.toString(cards));
+		}
+		System.out.println(loopCount + " random hands ok, in " + (System.currentTimeMillis() - startTime) + " ms");
+	}
+
+	private static int [] randomCards(Random random, int cardsTotal) {
+		int [] deck = new int[Card.TOTAL_CARDS];
+		for (int i=0; i<deck.length; i++)
+			deck[i] = i;
+		int [] cards = new int[cardsTotal];
+		for (int i=0; i<cardsTotal; i++) {
+			int j = i + random.nextInt(deck.length - i);
+			int tmp = deck[i];
+			deck[i] = deck[j];
+			deck[j] = tmp;
+			cards[i] = deck[i];
+		}
+		return cards;
+	}
+
+}
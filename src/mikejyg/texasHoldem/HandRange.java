@@ -0,0 +1,455 @@
+/*
+	Copyright 2012 Junyang Gu
+
+	This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package mikejyg.texasHoldem;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import mikejyg.playingCards.Card;
+
+/**
+ * a weighted range of hole cards.
+ *
+ * Each of the 1326 two-card combos has an index, and a weight in the range, in percent.
+ * A weight of 0 means the combo is not in the range.
+ *
+ * A range is parsed from a list separated by commas, e.g. "QQ+, AKs, A5s-A2s, KQo:0.5, AsKd, 30%":
+ * <ul>
+ * <li>a hand class, "AKs" suited, "AKo" off suit, "AK" both, or a pair "QQ"
+ * <li>"+", the class and the better kickers, e.g. "ATs+", or the higher pairs, e.g. "QQ+"
+ * <li>"-", the classes between, e.g. "A5s-A2s" or "22-55"
+ * <li>specific cards, e.g. "AsKd"
+ * <li>the top percentage of combos, e.g. "30%"
+ * <li>":weight", a fraction of the combos, e.g. "KQo:0.5"
+ * </ul>
+ *
+ * The top percentage takes hand classes by their equity against a random hand.
+ * The order is estimated once by Monte Carlo trials with a fixed seed.
+ */
+public class HandRange {
+
+	public static final int COMBOS_TOTAL = 1326;
+
+	public static final int HAND_CLASSES_TOTAL = 169;
+
+	static private final int CLASS_TRIALS = 20000;
+
+	// card int values of each combo, the lower value first
+	static private final int [] COMBO_CARD0 = new int[COMBOS_TOTAL];
+	static private final int [] COMBO_CARD1 = new int[COMBOS_TOTAL];
+
+	static private final long [] COMBO_MASKS = new long[COMBOS_TOTAL];
+
+	static {
+		for (int card1=1; card1<Card.TOTAL_CARDS; card1++) {
+			for (int card0=0; card0<card1; card0++) {
+				int combo = comboIndex(card0, card1);
+				COMBO_CARD0[combo] = card0;
+				COMBO_CARD1[combo] = card1;
+				COMBO_MASKS[combo] = FastEvaluator.toMask(card0) | FastEvaluator.toMask(card1);
+			}
+		}
+	}
+
+	// hand classes, best first, as classKey(), created on first use
+	static private int [] classOrder;
+
+	// weights in percent, indexed by combo
+	private int [] weights = new int[COMBOS_TOTAL];
+
+	/**
+	 * an empty range
+	 */
+	public HandRange() {
+	}
+
+	/////////////////////////////
+	// combos
+
+	/**
+	 * @param card0 card int value
+	 * @param card1 card int value, different from card0
+	 * @return the index of the combo, [0-1325]
+	 */
+	public static int comboIndex(int card0, int card1) {
+		if (card0 > card1) {
+			int tmp = card0;
+			card0 = card1;
+			card1 = tmp;
+		}
+		return card1 * (card1 - 1) / 2 + card0;
+	}
+
+	/**
+	 * @param i 0 for the lower card int value, 1 for the higher
+	 */
+	public static int getComboCard(int combo, int i) {
+		return i == 0 ? COMBO_CARD0[combo] : COMBO_CARD1[combo];
+	}
+
+	/**
+	 * @return the 64-bit mask of the combo, as FastEvaluator.toMask()
+	 */
+	public static long getComboMask(int combo) {
+		return COMBO_MASKS[combo];
+	}
+
+	/**
+	 * @return card int value of a rank (2-14) and a suit int value
+	 */
+	static int cardValue(int rank, int suit) {
+		return suit * 13 + (rank == 14 ? 0 : rank - 1);
+	}
+
+	/////////////////////////////
+	// the range
+
+	public int getWeight(int combo) {
+		return weights[combo];
+	}
+
+	/**
+	 * @param weight in percent, 0 removes the combo
+	 */
+	public void setWeight(int combo, int weight) {
+		if (weight < 0 || weight > 100)
+			throw new IllegalArgumentException("invalid weight: " + weight);
+		weights[combo] = weight;
+	}
+
+	/**
+	 * @return the indexes of the combos in the range, in ascending order
+	 */
+	public int [] getCombos() {
+		int [] combos = new int[size()];
+		int idx = 0;
+		for (int i=0; i<COMBOS_TOTAL; i++) {
+			if (weights[i] != 0)
+				combos[idx++] = i;
+		}
+		return combos;
+	}
+
+	/**
+	 * @return the number of combos in the range
+	 */
+	public int size() {
+		int cnt = 0;
+		for (int i=0; i<COMBOS_TOTAL; i++) {
+			if (weights[i] != 0)
+				cnt++;
+		}
+		return cnt;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		for (int i=0; i<COMBOS_TOTAL; i++) {
+			if (weights[i] == 0)
+				continue;
+			if (sb.length() != 0)
+				sb.append(',');
+			sb.append( cardString(COMBO_CARD1[i]) ).append( cardString(COMBO_CARD0[i]) );
+			if (weights[i] != 100)
+				sb.append(':').append(weights[i] / 100.0);
+		}
+		return sb.toString();
+	}
+
+	private static String cardString(int cardValue) {
+		int rank = cardValue % 13 + 1;
+		return "" + Card.Rank.getRank(rank).getSymbol() + Character.toLowerCase( suitSymbol(cardValue / 13) );
+	}
+
+	private static char suitSymbol(int suit) {
+		for (Card.Suit s : Card.Suit.values()) {
+			if (s.getIntValue() == suit)
+				return s.getSymbol();
+		}
+		throw new Error("invalid suit: " + suit);
+	}
+
+	/////////////////////////////
+	// parsing
+
+	public static HandRange parse(String str) {
+		HandRange range = new HandRange();
+		for (String token : str.split(",")) {
+			token = token.trim();
+			if (token.length() == 0)
+				continue;
+
+			int weight = 100;
+			int colon = token.indexOf(':');
+			if (colon >= 0) {
+				double fraction = Double.parseDouble( token.substring(colon + 1).trim() );
+				weight = (int) Math.round(fraction * 100);
+				if (fraction <= 0 || weight > 100)
+					throw new IllegalArgumentException("invalid weight: " + token);
+				weight = Math.max(weight, 1);
+				token = token.substring(0, colon).trim();
+			}
+
+			range.addToken(token, weight);
+		}
+		return range;
+	}
+
+	private void addToken(String token, int weight) {
+		if ( token.endsWith("%") ) {
+			double percent = Double.parseDouble( token.substring(0, token.length() - 1) );
+			addTopPercent(percent, weight);
+
+		} else if ( token.length() == 4 && isSuit(token.charAt(1)) && isSuit(token.charAt(3)) ) {
+			int card0 = Card.parse( token.substring(0, 2) ).getIntValue();
+			int card1 = Card.parse( token.substring(2, 4) ).getIntValue();
+			if (card0 == card1)
+				throw new IllegalArgumentException("invalid combo: " + token);
+			weights[ comboIndex(card0, card1) ] = weight;
+
+		} else if ( token.endsWith("+") ) {
+			int [] hand = parseClass( token.substring(0, token.length() - 1) );
+			if (hand[0] == hand[1]) {
+				for (int r=hand[0]; r<=14; r++)
+					addClass(r, r, hand[2], weight);
+			} else {
+				for (int r=hand[1]; r<hand[0]; r++)
+					addClass(hand[0], r, hand[2], weight);
+			}
+
+		} else if ( token.indexOf('-') > 0 ) {
+			int dash = token.indexOf('-');
+			int [] from = parseClass( token.substring(0, dash) );
+			int [] to = parseClass( token.substring(dash + 1) );
+			if (from[0] == from[1] && to[0] == to[1]) {
+				for (int r=Math.min(from[0], to[0]); r<=Math.max(from[0], to[0]); r++)
+					addClass(r, r, from[2], weight);
+			} else if (from[0] == to[0] && from[2] == to[2] && from[0] != from[1] && to[0] != to[1]) {
+				for (int r=Math.min(from[1], to[1]); r<=Math.max(from[1], to[1]); r++)
+					addClass(from[0], r, from[2], weight);
+			} else {
+				throw new IllegalArgumentException("invalid range: " + token);
+			}
+
+		} else {
+			int [] hand = parseClass(token);
+			addClass(hand[0], hand[1], hand[2], weight);
+		}
+	}
+
+	private static boolean isSuit(char c) {
+		c = Character.toUpperCase(c);
+		for (Card.Suit s : Card.Suit.values()) {
+			if (s.getSymbol() == c)
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * @return the high rank, the low rank, and 's', 'o', or 0 for both
+	 */
+	private static int [] parseClass(String str) {
+		if (str.length() < 2 || str.length() > 3)
+			throw new IllegalArgumentException("invalid hand class: " + str);
+
+		int rank0 = parseRank( str.charAt(0) );
+		int rank1 = parseRank( str.charAt(1) );
+		int suited = 0;
+		if (str.length() == 3) {
+			suited = Character.toLowerCase( str.charAt(2) );
+			if ( (suited != 's' && suited != 'o') || rank0 == rank1 )
+				throw new IllegalArgumentException("invalid hand class: " + str);
+		}
+
+		return new int [] { Math.max(rank0, rank1), Math.min(rank0, rank1), suited };
+	}
+
+	private static int parseRank(char c) {
+		c = Character.toUpperCase(c);
+		for (Card.Rank r : Card.Rank.values()) {
+			if (r.getSymbol() == c)
+				return r.getIntValue();
+		}
+		throw new IllegalArgumentException("invalid rank: " + c);
+	}
+
+	/**
+	 * add the combos of a hand class
+	 * @param suited 's', 'o', or 0 for both
+	 */
+	private void addClass(int high, int low, int suited, int weight) {
+		for (int suit0=0; suit0<4; suit0++) {
+			for (int suit1=0; suit1<4; suit1++) {
+				if (high == low && suit0 >= suit1)
+					continue;
+				if ( (suited == 's' && suit0 != suit1) || (suited == 'o' && suit0 == suit1) )
+					continue;
+				weights[ comboIndex( cardValue(high, suit0), cardValue(low, suit1) ) ] = weight;
+			}
+		}
+	}
+
+	/**
+	 * add the best hand classes, until they have the percentage of all combos
+	 */
+	private void addTopPercent(double percent, int weight) {
+		if (percent < 0 || percent > 100)
+			throw new IllegalArgumentException("invalid percentage: " + percent);
+
+		int [] order = getClassOrder();
+		double target = percent * COMBOS_TOTAL / 100;
+		int combos = 0;
+		for (int i=0; i<order.length && combos < target; i++) {
+			int high = order[i] >> 8;
+			int low = (order[i] >> 4) & 0xf;
+			int suited = order[i] & 0xf;
+			addClass(high, low, suited == 1 ? 's' : suited == 2 ? 'o' : 0, weight);
+			combos += high == low ? 6 : suited == 1 ? 4 : 12;
+		}
+	}
+
+	/////////////////////////////
+	// hand class order
+
+	/**
+	 * @param suited 0 for pairs, 1 for suited, 2 for off suit
+	 */
+	private static int classKey(int high, int low, int suited) {
+		return high << 8 | low << 4 | suited;
+	}
+
+	/**
+	 * @return the hand classes, as classKey(), in descending order of equity against a random hand
+	 */
+	static synchronized int [] getClassOrder() {
+		if (classOrder != null)
+			return classOrder;
+
+		List<Integer> keys = new ArrayList<Integer>();
+		final double [] equities = new double[classKey(14, 14, 2) + 1];
+		Random random = new Random(1);
+
+		for (int high=2; high<=14; high++) {
+			for (int low=2; low<=high; low++) {
+				for (int suited=0; suited<=2; suited++) {
+					if ( (high == low) != (suited == 0) )
+						continue;
+					int key = classKey(high, low, suited);
+					keys.add(key);
+					equities[key] = equityVsRandom( cardValue(high, 0), cardValue(low, suited == 1 ? 0 : 1), random );
+				}
+			}
+		}
+
+		Collections.sort(keys, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer o1, Integer o2) {
+				return Double.compare(equities[o2], equities[o1]);
+			}
+		});
+
+		classOrder = new int[keys.size()];
+		for (int i=0; i<classOrder.length; i++)
+			classOrder[i] = keys.get(i);
+		return classOrder;
+	}
+
+	private static double equityVsRandom(int card0, int card1, Random random) {
+		int [] cards = new int[Card.TOTAL_CARDS - 2];
+		int idx = 0;
+		for (int i=0; i<Card.TOTAL_CARDS; i++) {
+			if (i != card0 && i != card1)
+				cards[idx++] = i;
+		}
+
+		HandState table = new HandState();
+		HandState work = new HandState();
+		double equity = 0;
+
+		for (int t=0; t<CLASS_TRIALS; t++) {
+			// partial shuffle of the opponent's cards and the table
+			for (int i=0; i<7; i++) {
+				int j = i + random.nextInt(cards.length - i);
+				int tmp = cards[i];
+				cards[i] = cards[j];
+				cards[j] = tmp;
+			}
+
+			table.clear();
+			for (int i=2; i<7; i++)
+				table.add(cards[i]);
+
+			work.set(table);
+			work.add(card0);
+			work.add(card1);
+			int strength = work.evaluate();
+
+			work.set(table);
+			work.add(cards[0]);
+			work.add(cards[1]);
+			int opponent = work.evaluate();
+
+			if (strength > opponent)
+				equity += 1;
+			else if (strength == opponent)
+				equity += 0.5;
+		}
+
+		return equity / CLASS_TRIALS;
+	}
+
+	///////////////////////////////////////////////
+	// test
+
+	/**
+	 * prints the combos of a range, and the hand class order.
+	 * arguments: range
+	 */
+	public static void main(String[] args) {
+		String str = args.length >= 1 ? args[0] : "QQ+, AKs, A5s-A2s, KQo:0.5, 2%";
+
+		long startTime = System.currentTimeMillis();
+		HandRange range = parse(str);
+		System.out.println( range.size() + " combos, in " + (System.currentTimeMillis() - startTime) + " ms" );
+		System.out.println(range);
+
+		int [] order = getClassOrder();
+		StringBuilder sb = new StringBuilder();
+		for (int key : order) {
+			int high = key >> 8;
+			int low = (key >> 4) & 0xf;
+			int suited = key & 0xf;
+			sb.append( Card.Rank.getRank(high).getSymbol() ).append( Card.Rank.getRank(low).getSymbol() );
+			sb.append( suited == 1 ? "s " : suited == 2 ? "o " : " " );
+		}
+		System.out.println(sb.toString().trim());
+
+		if ( !Arrays.equals( parse("QQ+").getCombos(), parse("QQ,KK,AA").getCombos() )
+				|| parse("AKs").size() != 4 || parse("AKo").size() != 12 || parse("AK").size() != 16
+				|| parse("22+").size() != 78 || parse("100%").size() != COMBOS_TOTAL ) {
+			throw new Error("parse check failed");
+		}
+	}
+
+}
@@ -0,0 +1,133 @@
+/*
+	Copyright 2012 Junyang Gu
+
+	This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package mikejyg.texasHoldem;
+
+import mikejyg.playingCards.Card;
+import mikejyg.texasHoldem.Score.Pattern;
+
+/**
+ * the evaluation state of a set of cards: the card mask and the rank multiplicities.
+ * Cards are folded in one at a time, so a state can be built once, e.g. for the table cards,
+ * copied, and completed with each hand's cards.
+ * 
+ * It is evaluated by the FastEvaluator, at any number of cards, so a hand can be followed
+ * street by street, at a constant cost per added card.
+ */
+public class HandState {
+
+	private long mask;
+	
+	// ranks having at least 1, 2, 3 and 4 cards
+	private int ranks;
+	private int twoOrMore;
+	private int threeOrMore;
+	private int quads;
+	
+	private int cardsTotal;
+	
+	public void clear() {
+		mask = 0;
+		ranks = 0;
+		twoOrMore = 0;
+		threeOrMore = 0;
+		quads = 0;
+		cardsTotal = 0;
+	}
+	
+	/**
+	 * copy the state of another
+	 */
+	public void set(HandState o) {
+		mask = o.mask;
+		ranks = o.ranks;
+		twoOrMore = o.twoOrMore;
+		threeOrMore = o.threeOrMore;
+		quads = o.quads;
+		cardsTotal = o.cardsTotal;
+	}
+	
+	public void add(Card card) {
+		addMask( FastEvaluator.toMask(card) );
+	}
+	
+	/**
+	 * @param cardValue card int value, as Card.getIntValue()
+	 */
+	public void add(int cardValue) {
+		addMask( FastEvaluator.toMask(cardValue) );
+	}
+	
+	/**
+	 * add a card, given as a single bit card mask. 
+	 * Adding a card already in the hand has no effect.
+	 */
+	public void addMask(long cardMask) {
+		if ( (mask & cardMask) != 0 )
+			return;
+		
+		mask |= cardMask;
+		
+		int bit = (int) (cardMask | cardMask >>> 16 | cardMask >>> 32 | cardMask >>> 48) & FastEvaluator.RANK_MASK;
+		quads |= threeOrMore & bit;
+		threeOrMore |= twoOrMore & bit;
+		twoOrMore |= ranks & bit;
+		ranks |= bit;
+		
+		cardsTotal++;
+	}
+	
+	/**
+	 * @return the strength value of the best 5 cards so far
+	 */
+	public int evaluate() {
+		return FastEvaluator.evaluate(mask, ranks, twoOrMore, threeOrMore, quads);
+	}
+	
+	/**
+	 * @return the strength value with one more card, leaving the state as it is
+	 * @param cardValue card int value, as Card.getIntValue()
+	 */
+	public int evaluateWith(int cardValue) {
+		long cardMask = FastEvaluator.toMask(cardValue);
+		if ( (mask & cardMask) != 0 )
+			return evaluate();
+		
+		int bit = (int) (cardMask | cardMask >>> 16 | cardMask >>> 32 | cardMask >>> 48) & FastEvaluator.RANK_MASK;
+		return FastEvaluator.evaluate(mask | cardMask, ranks | bit, twoOrMore | ranks & bit,
+				threeOrMore | twoOrMore & bit, quads | threeOrMore & bit);
+	}
+	
+	/**
+	 * @return the best pattern so far
+	 */
+	public Pattern getPattern() {
+		return FastEvaluator.getPattern( evaluate() );
+	}
+	
+	////////////////////////////
+	// getters
+	
+	public long getMask() {
+		return mask;
+	}
+	
+	public int getCardsTotal() {
+		return cardsTotal;
+	}
+	
+}
@@ -0,0 +1,148 @@
+/*
+	Copyright 2012 Junyang Gu
+
+	This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package mikejyg.texasHoldem;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import mikejyg.playingCards.Card;
+import mikejyg.texasHoldem.Score.Pattern;
+
+/**
+ * exact pattern statistics of all C(52,7) 7-card hands.
+ * 
+ * The hands are enumerated in parallel, on a fork/join pool, split by their two lowest cards. 
+ * Each task counts the patterns of its hands, and the counts are summed as the tasks join.
+ */
+public class PatternStatistics {
+
+	static public final long TOTAL_HANDS = 133784560L;
+	
+	/**
+	 * counts the patterns of the hands whose two lowest cards are the pairs in [from, to).
+	 */
+	@SuppressWarnings("serial")
+	static class EnumerationTask extends RecursiveTask<long []> {
+		
+		private final int [][] lowPairs;
+		private final int from;
+		private final int to;
+		
+		EnumerationTask(int [][] lowPairs, int from, int to) {
+			this.lowPairs = lowPairs;
+			this.from = from;
+			this.to = to;
+		}
+		
+		@Override
+		protected long [] compute() {
+			if (to - from > 1) {
+				int mid = (from + to) / 2;
+				EnumerationTask low = new EnumerationTask(lowPairs, from, mid);
+				low.fork();
+				long [] counts = new EnumerationTask(lowPairs, mid, to).compute();
+				long [] lowCounts = low.join();
+				for (int i=0; i<Pattern.TOTAL_PATTERNS; i++)
+					counts[i] += lowCounts[i];
+				return counts;
+			}
+			
+			long [] counts = new long[Pattern.TOTAL_PATTERNS];
+			count(lowPairs[from][0], lowPairs[from][1], counts);
+			return counts;
+		}
+	}
+	
+	/**
+	 * count the patterns of all hands with the given two lowest cards
+	 */
+	static void count(int card0, int card1, long [] counts) {
+		final int n = Card.TOTAL_CARDS;
+		long m1 = FastEvaluator.toMask(card0) | FastEvaluator.toMask(card1);
+		
+		for (int c2=card1+1; c2<n-4; c2++) {
+			long m2 = m1 | FastEvaluator.toMask(c2);
+			for (int c3=c2+1; c3<n-3; c3++) {
+				long m3 = m2 | FastEvaluator.toMask(c3);
+				for (int c4=c3+1; c4<n-2; c4++) {
+					long m4 = m3 | FastEvaluator.toMask(c4);
+					for (int c5=c4+1; c5<n-1; c5++) {
+						long m5 = m4 | FastEvaluator.toMask(c5);
+						for (int c6=c5+1; c6<n; c6++) {
+							int strength = FastEvaluator.evaluate( m5 | FastEvaluator.toMask(c6) );
+							counts[ FastEvaluator.getPattern(strength).getIntValue() ]++;
+						}
+					}
+				}
+			}
+		}
+	}
+	
+	/**
+	 * count the patterns of all 7-card hands
+	 * @return counts, indexed by pattern int value
+	 */
+	public static long [] countAll(ForkJoinPool pool) {
+		// pairs of the two lowest cards, leaving at least 5 cards above
+		int [][] lowPairs = new int[ (Card.TOTAL_CARDS-5) * (Card.TOTAL_CARDS-6) / 2 ][];
+		int idx = 0;
+		for (int c0=0; c0<Card.TOTAL_CARDS-6; c0++) {
+			for (int c1=c0+1; c1<Card.TOTAL_CARDS-5; c1++) {
+				lowPairs[idx++] = new int[] {c0, c1};
+			}
+		}
+		
+		return pool.invoke( new EnumerationTask(lowPairs, 0, lowPairs.length) );
+	}
+	
+	///////////////////////////////////////////////
+	// test
+	
+	/**
+	 * print the exact statistics, in the format of Evaluator.main.
+	 * argument: parallelism, defaults to the number of processors
+	 */
+	public static void main(String[] args) {
+		int parallelism = Runtime.getRuntime().availableProcessors();
+		
+		if (args.length>=1) {
+			parallelism = Integer.parseInt(args[0]);
+		}
+		
+		long startTime = System.currentTimeMillis();
+		long [] counts = countAll( new ForkJoinPool(parallelism) );
+		long elapsed = System.currentTimeMillis() - startTime;
+		
+		long total = 0;
+		for (int i=0; i<Pattern.TOTAL_PATTERNS; i++) {
+			total += counts[i];
+		}
+		
+		if (total != TOTAL_HANDS)
+			throw new Error("enumerated " + total + " hands, instead of " + TOTAL_HANDS);
+		
+		System.out.println("all " + total + " hands, " + elapsed + " ms, parallelism " + parallelism);
+		
+		for (int i=0; i<Pattern.TOTAL_PATTERNS; i++) {
+			double probability = (double) counts[i] / total; 
+			System.out.println( Pattern.getPattern(i).toString() + ": " + counts[i] + 
+					", " +  probability*100 + "%" );
+		}
+	}
+	
+}
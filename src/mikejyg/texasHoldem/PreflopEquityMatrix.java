@@ -0,0 +1,334 @@
+/*
+	Copyright 2012 Junyang Gu
+
+	This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package mikejyg.texasHoldem;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+
+import mikejyg.playingCards.Card;
+
+/**
+ * exact heads-up preflop equity of every pair of hole cards, looked up from a file.
+ *
+ * The 1326 x 1326 pairs of hands fall into 93769 matchups up to suit isomorphism, indexed by a
+ * HandIndexer of 2 rounds of 2 cards. For each matchup the file has the number of tables,
+ * out of all 1712304, won and tied by the first hand. It also has the equity of each of the
+ * 169 hand classes against each, over the pairs of hands not sharing a card.
+ *
+ * The file is built once by enumerating every table of every matchup, in parallel,
+ * and is memory mapped, as the TableEvaluator.
+ */
+public class PreflopEquityMatrix {
+
+	static Logger logger = Logger.getLogger(PreflopEquityMatrix.class);
+
+	static private final int MAGIC = 0x50464551;	// "PFEQ"
+	static private final int VERSION = 1;
+	static private final int HEADER_INTS = 4;
+
+	static private final HandIndexer MATCHUPS = new HandIndexer(2, 2);
+
+	static private final int MATCHUPS_TOTAL = (int) MATCHUPS.size();
+
+	static private final int CLASSES = HandRange.HAND_CLASSES_TOTAL;
+
+	/**
+	 * the number of tables of a matchup
+	 */
+	static public final long TABLES = EquityCalculator.combinations(Card.TOTAL_CARDS - 4, 5);
+
+	// matchups per task
+	static private final int CHUNK_MATCHUPS = 16;
+
+	// wins and ties, by matchup
+	private IntBuffer matchupTable;
+
+	// equity bits of a float, by class and class
+	private IntBuffer classTable;
+
+	/**
+	 * map the tables from a file, made by build()
+	 */
+	public PreflopEquityMatrix(File file) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		MappedByteBuffer buffer;
+		try {
+			buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+		} finally {
+			// the mapping stays valid after the channel is closed
+			raf.close();
+		}
+
+		IntBuffer ints = buffer.asIntBuffer();
+		if ( ints.limit() != HEADER_INTS + 2 * MATCHUPS_TOTAL + CLASSES * CLASSES
+				|| ints.get(0) != MAGIC || ints.get(1) != VERSION
+				|| ints.get(2) != MATCHUPS_TOTAL || ints.get(3) != CLASSES ) {
+			throw new IOException("invalid equity file: " + file);
+		}
+
+		ints.position(HEADER_INTS);
+		ints.limit(HEADER_INTS + 2 * MATCHUPS_TOTAL);
+		matchupTable = ints.slice();
+
+		ints.limit(ints.capacity());
+		ints.position(HEADER_INTS + 2 * MATCHUPS_TOTAL);
+		classTable = ints.slice();
+	}
+
+	/////////////////////////////
+	// lookup
+
+	/**
+	 * @param cardValues the 2 cards of the first hand, then the 2 cards of the second hand
+	 * @return the index of the matchup
+	 */
+	public static int matchupIndex(int [] cardValues) {
+		return (int) MATCHUPS.index(cardValues);
+	}
+
+	/**
+	 * @return the number of tables won by the first hand
+	 */
+	public int getWins(int matchup) {
+		return matchupTable.get(2 * matchup);
+	}
+
+	/**
+	 * @return the number of tables tied
+	 */
+	public int getTies(int matchup) {
+		return matchupTable.get(2 * matchup + 1);
+	}
+
+	/**
+	 * @return the equity of the first hand
+	 */
+	public double getEquity(int matchup) {
+		return (getWins(matchup) + getTies(matchup) / 2.0) / TABLES;
+	}
+
+	public double getEquity(Card [] hand0, Card [] hand1) {
+		return getEquity( matchupIndex( new int [] { hand0[0].getIntValue(), hand0[1].getIntValue(),
+				hand1[0].getIntValue(), hand1[1].getIntValue() } ) );
+	}
+
+	/**
+	 * @param class0 a hand class, as the index of HandIndexer.PREFLOP
+	 * @return the equity of the first hand class against the second, over the pairs of hands not sharing a card
+	 */
+	public double getClassEquity(int class0, int class1) {
+		return Float.intBitsToFloat( classTable.get(class0 * CLASSES + class1) );
+	}
+
+	/**
+	 * @return the equity of the class of the first hand against the class of the second
+	 */
+	public double getClassEquity(Card [] hand0, Card [] hand1) {
+		return getClassEquity( (int) HandIndexer.PREFLOP.index(hand0), (int) HandIndexer.PREFLOP.index(hand1) );
+	}
+
+	/////////////////////////////
+	// building
+
+	/**
+	 * enumerate every matchup on a pool, and save the tables to a file.
+	 * The file is written under a temporary name first, so readers never see a partial file.
+	 */
+	public static void build(File file, ForkJoinPool pool) throws IOException {
+		logger.info("building preflop equities: " + file);
+
+		int [] matchupTable = new int[2 * MATCHUPS_TOTAL];
+		pool.invoke( new BuildTask(matchupTable, 0, MATCHUPS_TOTAL, new AtomicLong()) );
+
+		float [] classTable = buildClassTable(matchupTable);
+
+		File tmpFile = File.createTempFile(file.getName(), ".tmp", file.getAbsoluteFile().getParentFile());
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(MATCHUPS_TOTAL);
+			out.writeInt(CLASSES);
+			for (int i=0; i<matchupTable.length; i++)
+				out.writeInt(matchupTable[i]);
+			for (int i=0; i<classTable.length; i++)
+				out.writeInt( Float.floatToIntBits(classTable[i]) );
+		} finally {
+			out.close();
+		}
+
+		try {
+			Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			// left only if the move failed
+			tmpFile.delete();
+		}
+	}
+
+	/**
+	 * enumerates the matchups in [fromMatchup, toMatchup).
+	 * A matchup and the one with the hands swapped are both filled by the lower index.
+	 */
+	@SuppressWarnings("serial")
+	static class BuildTask extends RecursiveAction {
+		private final int [] matchupTable;
+		private final int fromMatchup;
+		private final int toMatchup;
+		private final AtomicLong done;
+
+		BuildTask(int [] matchupTable, int fromMatchup, int toMatchup, AtomicLong done) {
+			this.matchupTable = matchupTable;
+			this.fromMatchup = fromMatchup;
+			this.toMatchup = toMatchup;
+			this.done = done;
+		}
+
+		@Override
+		protected void compute() {
+			if (toMatchup - fromMatchup > CHUNK_MATCHUPS) {
+				int mid = (fromMatchup + toMatchup) / 2;
+				invokeAll( new BuildTask(matchupTable, fromMatchup, mid, done),
+						new BuildTask(matchupTable, mid, toMatchup, done) );
+				return;
+			}
+
+			for (int i=fromMatchup; i<toMatchup; i++) {
+				enumerate(matchupTable, i);
+			}
+
+			long cnt = done.addAndGet(toMatchup - fromMatchup);
+			if (cnt / 1000 != (cnt - (toMatchup - fromMatchup)) / 1000)
+				logger.info(cnt + " of " + MATCHUPS_TOTAL + " matchups");
+		}
+	}
+
+	static void enumerate(int [] matchupTable, int matchup) {
+		int [] cards = MATCHUPS.unindex(matchup);
+		int swapped = matchupIndex( new int [] { cards[2], cards[3], cards[0], cards[1] } );
+		if (swapped < matchup)
+			return;
+
+		Card [] hands = MATCHUPS.unindexCards(matchup);
+		EquityCalculator.Setup setup = new EquityCalculator.Setup( new Card [][] {
+				{ hands[0], hands[1] }, { hands[2], hands[3] } }, new Card[0], new Card[0] );
+		Equity equity = new Equity(2);
+		EquityCalculator.enumerate(setup, 0, setup.remainingCards.length - setup.tableCardsToDeal + 1, equity);
+		if (equity.getTrials() != TABLES)
+			throw new Error("unexpected tables: " + equity.getTrials());
+
+		matchupTable[2 * matchup] = (int) equity.getWins(0);
+		matchupTable[2 * matchup + 1] = (int) equity.getTies(0);
+		matchupTable[2 * swapped] = (int) equity.getWins(1);
+		matchupTable[2 * swapped + 1] = (int) equity.getTies(1);
+	}
+
+	/**
+	 * average the equities of the pairs of hands of each pair of classes
+	 */
+	private static float [] buildClassTable(int [] matchupTable) {
+		int [] classes = new int[HandRange.COMBOS_TOTAL];
+		for (int combo=0; combo<HandRange.COMBOS_TOTAL; combo++) {
+			classes[combo] = (int) HandIndexer.PREFLOP.index( new int [] {
+					HandRange.getComboCard(combo, 0), HandRange.getComboCard(combo, 1) } );
+		}
+
+		double [] sums = new double[CLASSES * CLASSES];
+		int [] counts = new int[CLASSES * CLASSES];
+		int [] cards = new int[4];
+
+		for (int combo0=0; combo0<HandRange.COMBOS_TOTAL; combo0++) {
+			cards[0] = HandRange.getComboCard(combo0, 0);
+			cards[1] = HandRange.getComboCard(combo0, 1);
+			for (int combo1=0; combo1<HandRange.COMBOS_TOTAL; combo1++) {
+				if ( (HandRange.getComboMask(combo0) & HandRange.getComboMask(combo1)) != 0 )
+					continue;
+				cards[2] = HandRange.getComboCard(combo1, 0);
+				cards[3] = HandRange.getComboCard(combo1, 1);
+				int matchup = matchupIndex(cards);
+				int idx = classes[combo0] * CLASSES + classes[combo1];
+				sums[idx] += (matchupTable[2 * matchup] + matchupTable[2 * matchup + 1] / 2.0) / TABLES;
+				counts[idx]++;
+			}
+		}
+
+		float [] classTable = new float[CLASSES * CLASSES];
+		for (int i=0; i<classTable.length; i++)
+			classTable[i] = (float) (sums[i] / counts[i]);
+		return classTable;
+	}
+
+	///////////////////////////////////////////////
+	// test
+
+	/**
+	 * builds the file if it does not exist, then compares random matchups with the EquityCalculator.
+	 * arguments: file, seed, loop count
+	 */
+	public static void main(String[] args) throws IOException {
+		File file = new File(args.length >= 1 ? args[0] : "preflop.eq");
+		long seed = args.length >= 2 ? Long.parseLong(args[1]) : 1;
+		int loopCount = args.length >= 3 ? Integer.parseInt(args[2]) : 20;
+
+		ForkJoinPool pool = new ForkJoinPool();
+		if ( !file.exists() ) {
+			long startTime = System.currentTimeMillis();
+			build(file, pool);
+			System.out.println("built in " + (System.currentTimeMillis() - startTime) / 1000 + " s");
+		}
+
+		PreflopEquityMatrix matrix = new PreflopEquityMatrix(file);
+		EquityCalculator calculator = new EquityCalculator(pool);
+		Random random = new Random(seed);
+
+		for (int cnt=0; cnt<loopCount; cnt++) {
+			int combo0 = random.nextInt(HandRange.COMBOS_TOTAL);
+			int combo1 = random.nextInt(HandRange.COMBOS_TOTAL);
+			if ( (HandRange.getComboMask(combo0) & HandRange.getComboMask(combo1)) != 0 )
+				continue;
+
+			Card [] hand0 = { Card.of( HandRange.getComboCard(combo0, 0) ),
+					Card.of( HandRange.getComboCard(combo0, 1) ) };
+			Card [] hand1 = { Card.of( HandRange.getComboCard(combo1, 0) ),
+					Card.of( HandRange.getComboCard(combo1, 1) ) };
+
+			int matchup = matchupIndex( new int [] { hand0[0].getIntValue(), hand0[1].getIntValue(),
+					hand1[0].getIntValue(), hand1[1].getIntValue() } );
+			Equity expected = calculator.enumerate( new Card [][] {hand0, hand1}, new Card[0], new Card[0] );
+			System.out.println(hand0[0] + " " + hand0[1] + " vs " + hand1[0] + " " + hand1[1] + ": " 
+					+ matrix.getEquity(matchup) + ", class " + matrix.getClassEquity(hand0, hand1));
+			if ( matrix.getWins(matchup) != expected.getWins(0) || matrix.getTies(matchup) != expected.getTies(0) )
+				throw new Error("mismatch, expected " + expected.getEquity(0));
+		}
+	}
+
+}
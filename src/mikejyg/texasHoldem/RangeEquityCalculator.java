@@ -0,0 +1,340 @@
+/*
+	Copyright 2012 Junyang Gu
+
+	This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package mikejyg.texasHoldem;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import mikejyg.playingCards.Card;
+import mikejyg.playingCards.CounterShuffleRandom;
+import mikejyg.playingCards.ShuffleRandom;
+
+/**
+ * all-in equity of one range of hole cards against another.
+ *
+ * For every table, each combo of the two ranges is evaluated once, and sorted by strength, 
+ * then all pairs of combos that do not share a card are compared in one sweep, by BoardStrengths.
+ * A pair counts with the product of the combo weights, so the trials of the resulting Equity 
+ * are weighted, in percent squared.
+ *
+ * Tables are dealt at random, or all enumerated, in parallel on a fork/join pool,
+ * in the same way as EquityCalculator; chunk i of random tables draws from deal i of 
+ * a counter based generator of the seed.
+ */
+public class RangeEquityCalculator {
+
+	static private final int CHUNK_TABLES = 100;
+
+	// below this, tables are enumerated on the calling thread
+	static private final long PARALLEL_TABLES = 200;
+
+	private ForkJoinPool pool;
+
+	public RangeEquityCalculator(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+
+	/**
+	 * the ranges of a query, without the combos blocked by known cards, and the cards left to deal
+	 */
+	static class Setup {
+		// weights of the two ranges, indexed by combo
+		final int [][] comboWeights = new int[2][HandRange.COMBOS_TOTAL];
+
+		// the combos of either range, each once
+		final int [] allCombos;
+
+		// the table cards dealt
+		final HandState table = new HandState();
+
+		// the number of table cards to deal
+		final int tableCardsToDeal;
+
+		// card int values of the cards not dealt, and not dead
+		final int [] remainingCards;
+
+		Setup(HandRange [] ranges, Card [] tableCards, Card [] deadCards) {
+			if (ranges.length != 2)
+				throw new IllegalArgumentException("2 ranges expected");
+			if (tableCards.length > 5)
+				throw new IllegalArgumentException("more than 5 table cards");
+
+			for (Card card : tableCards) {
+				table.add(card);
+			}
+			long knownMask = table.getMask();
+			long deadMask = FastEvaluator.toMask(deadCards);
+			if ( Long.bitCount(knownMask) != tableCards.length || Long.bitCount(deadMask) != deadCards.length
+					|| (knownMask & deadMask) != 0 )
+				throw new IllegalArgumentException("a card is used more than once");
+			knownMask |= deadMask;
+
+			boolean [] used = new boolean[HandRange.COMBOS_TOTAL];
+			int usedCnt = 0;
+			for (int r=0; r<2; r++) {
+				int cnt = 0;
+				for (int combo : ranges[r].getCombos()) {
+					if ( (HandRange.getComboMask(combo) & knownMask) != 0 )
+						continue;
+					comboWeights[r][combo] = ranges[r].getWeight(combo);
+					cnt++;
+					if ( !used[combo] ) {
+						used[combo] = true;
+						usedCnt++;
+					}
+				}
+				if (cnt == 0)
+					throw new IllegalArgumentException("range " + (r+1) + " has no combos");
+			}
+
+			allCombos = new int[usedCnt];
+			int idx = 0;
+			for (int i=0; i<HandRange.COMBOS_TOTAL; i++) {
+				if (used[i])
+					allCombos[idx++] = i;
+			}
+
+			tableCardsToDeal = 5 - tableCards.length;
+
+			remainingCards = new int[Card.TOTAL_CARDS - Long.bitCount(knownMask)];
+			idx = 0;
+			for (int i=0; i<Card.TOTAL_CARDS; i++) {
+				if ( (knownMask & FastEvaluator.toMask(i)) == 0 )
+					remainingCards[idx++] = i;
+			}
+		}
+
+		/**
+		 * evaluate the showdowns of all pairs of combos with a complete table
+		 * @param strengths receives the strengths of the combos
+		 */
+		void showdown(HandState completeTable, BoardStrengths strengths, Equity equity) {
+			strengths.set(completeTable, allCombos);
+			strengths.sweep(comboWeights[0], comboWeights[1], equity);
+		}
+	}
+	
+	/**
+	 * Monte Carlo equity
+	 *
+	 * @param tableCards the table cards already dealt, 0 to 5
+	 * @param deadCards cards known to be out of play
+	 * @param tables the number of tables to deal
+	 */
+	public Equity simulate(HandRange range0, HandRange range1, Card [] tableCards, Card [] deadCards,
+			long tables, long seed) {
+		Setup setup = new Setup(new HandRange [] {range0, range1}, tableCards, deadCards);
+		long chunks = (tables + CHUNK_TABLES - 1) / CHUNK_TABLES;
+		return pool.invoke( new SimulationTask(setup, tables, seed, 0, chunks) );
+	}
+
+	@SuppressWarnings("serial")
+	static class SimulationTask extends RecursiveTask<Equity> {
+		private final Setup setup;
+		private final long tables;
+		private final long seed;
+		private final long fromChunk;
+		private final long toChunk;
+
+		SimulationTask(Setup setup, long tables, long seed, long fromChunk, long toChunk) {
+			this.setup = setup;
+			this.tables = tables;
+			this.seed = seed;
+			this.fromChunk = fromChunk;
+			this.toChunk = toChunk;
+		}
+
+		@Override
+		protected Equity compute() {
+			if (toChunk - fromChunk > 1) {
+				long mid = (fromChunk + toChunk) / 2;
+				SimulationTask low = new SimulationTask(setup, tables, seed, fromChunk, mid);
+				low.fork();
+				Equity equity = new SimulationTask(setup, tables, seed, mid, toChunk).compute();
+				equity.add( low.join() );
+				return equity;
+			}
+
+			Equity equity = new Equity(2);
+			if (toChunk > fromChunk) {
+				long from = fromChunk * CHUNK_TABLES;
+				long to = Math.min(from + CHUNK_TABLES, tables);
+				simulate(setup, new CounterShuffleRandom(seed, fromChunk), to - from, equity);
+			}
+			return equity;
+		}
+	}
+
+	/**
+	 * deal tables on the calling thread
+	 */
+	static void simulate(Setup setup, ShuffleRandom random, long tables, Equity equity) {
+		int [] cards = setup.remainingCards.clone();
+		HandState table = new HandState();
+		BoardStrengths strengths = new BoardStrengths();
+
+		for (long t=0; t<tables; t++) {
+			table.set(setup.table);
+
+			// partial shuffle of the table cards needed
+			for (int i=0; i<setup.tableCardsToDeal; i++) {
+				int j = i + random.nextInt(cards.length - i);
+				int tmp = cards[i];
+				cards[i] = cards[j];
+				cards[j] = tmp;
+				table.add(cards[i]);
+			}
+
+			setup.showdown(table, strengths, equity);
+		}
+	}
+
+	/**
+	 * exact equity, over all runouts of the table
+	 *
+	 * @param tableCards the table cards already dealt, 0 to 5
+	 * @param deadCards cards known to be out of play
+	 */
+	public Equity enumerate(HandRange range0, HandRange range1, Card [] tableCards, Card [] deadCards) {
+		Setup setup = new Setup(new HandRange [] {range0, range1}, tableCards, deadCards);
+		int firstCards = setup.remainingCards.length - setup.tableCardsToDeal + 1;
+
+		Equity equity;
+		if (setup.tableCardsToDeal == 0
+				|| EquityCalculator.combinations(setup.remainingCards.length, setup.tableCardsToDeal) < PARALLEL_TABLES) {
+			equity = new Equity(2);
+			enumerate(setup, 0, firstCards, equity);
+		} else {
+			equity = pool.invoke( new EnumerationTask(setup, 0, firstCards) );
+		}
+
+		equity.setExact(true);
+		return equity;
+	}
+
+	/**
+	 * enumerates the runouts whose first card index is in [fromCard, toCard)
+	 */
+	@SuppressWarnings("serial")
+	static class EnumerationTask extends RecursiveTask<Equity> {
+		private final Setup setup;
+		private final int fromCard;
+		private final int toCard;
+
+		EnumerationTask(Setup setup, int fromCard, int toCard) {
+			this.setup = setup;
+			this.fromCard = fromCard;
+			this.toCard = toCard;
+		}
+
+		@Override
+		protected Equity compute() {
+			if (toCard - fromCard > 1) {
+				int mid = (fromCard + toCard) / 2;
+				EnumerationTask low = new EnumerationTask(setup, fromCard, mid);
+				low.fork();
+				Equity equity = new EnumerationTask(setup, mid, toCard).compute();
+				equity.add( low.join() );
+				return equity;
+			}
+
+			Equity equity = new Equity(2);
+			enumerate(setup, fromCard, toCard, equity);
+			return equity;
+		}
+	}
+
+	/**
+	 * enumerate on the calling thread the runouts whose first card index is in [fromCard, toCard)
+	 */
+	static void enumerate(Setup setup, int fromCard, int toCard, Equity equity) {
+		HandState [] tables = new HandState[setup.tableCardsToDeal + 1];
+		for (int i=0; i<tables.length; i++)
+			tables[i] = new HandState();
+		tables[0].set(setup.table);
+
+		if (setup.tableCardsToDeal == 0) {
+			// a complete table may be queried again
+			BoardStrengths.get( tables[0].getMask() ).sweep(setup.comboWeights[0], setup.comboWeights[1], equity);
+			return;
+		}
+
+		BoardStrengths strengths = new BoardStrengths();
+
+		for (int i=fromCard; i<toCard; i++) {
+			tables[1].set(tables[0]);
+			tables[1].add(setup.remainingCards[i]);
+			enumerate(setup, tables, 1, i+1, strengths, equity);
+		}
+	}
+
+	/**
+	 * @param tables table states, by the number of cards dealt
+	 * @param dealt the number of cards dealt so far
+	 * @param fromCard index of the lowest card to deal next
+	 */
+	private static void enumerate(Setup setup, HandState [] tables, int dealt, int fromCard,
+			BoardStrengths strengths, Equity equity) {
+
+		if (dealt == setup.tableCardsToDeal) {
+			setup.showdown(tables[dealt], strengths, equity);
+			return;
+		}
+
+		int [] cards = setup.remainingCards;
+		int toCard = cards.length - (setup.tableCardsToDeal - dealt) + 1;
+		for (int i=fromCard; i<toCard; i++) {
+			tables[dealt+1].set(tables[dealt]);
+			tables[dealt+1].add(cards[i]);
+			enumerate(setup, tables, dealt+1, i+1, strengths, equity);
+		}
+	}
+
+	///////////////////////////////////////////////
+	// test
+
+	/**
+	 * arguments: two ranges, e.g. "QQ+, AKs" and "30%", table cards, dead cards,
+	 * the number of tables or "exact", seed
+	 */
+	public static void main(String[] args) {
+		String range0 = args.length >= 1 ? args[0] : "QQ+, AKs";
+		String range1 = args.length >= 2 ? args[1] : "30%";
+		String table = args.length >= 3 ? args[2] : "";
+		String dead = args.length >= 4 ? args[3] : "";
+		String tables = args.length >= 5 ? args[4] : "100000";
+		long seed = args.length >= 6 ? Long.parseLong(args[5]) : 1;
+
+		HandRange hands0 = HandRange.parse(range0);
+		HandRange hands1 = HandRange.parse(range1);
+		RangeEquityCalculator calculator = new RangeEquityCalculator( new ForkJoinPool() );
+
+		long startTime = System.nanoTime();
+		Equity equity;
+		if (tables.equals("exact"))
+			equity = calculator.enumerate(hands0, hands1, Card.parseCards(table), Card.parseCards(dead));
+		else
+			equity = calculator.simulate(hands0, hands1, Card.parseCards(table), Card.parseCards(dead),
+					Long.parseLong(tables), seed);
+
+		System.out.println(hands0.size() + " vs " + hands1.size() + " combos");
+		System.out.println(equity);
+		System.out.println( (System.nanoTime() - startTime) / 1000 + " us" );
+	}
+
+}
@@ -18,8 +18,11 @@
 package mikejyg.texasHoldem;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 import mikejyg.playingCards.Card;
+import mikejyg.playingCards.Card.Suit;
 
 /**
  * the score of a hand.
@@ -72,6 +75,50 @@ public class Score implements Comparable<Score> {
 	
 	private ArrayList<Card> highCards = new ArrayList<Card>();
 
+	// packed pattern and high card ranks, -1 if not computed yet
+	private int strength = -1;
+
+	public Score() {
+	}
+	
+	/**
+	 * a score of a known strength, as produced by the FastEvaluator.
+	 * The high cards are picked from the table and hand cards; among cards of the same rank,
+	 * the one of the highest suit is picked first, as the Evaluator does.
+	 */
+	public Score(int strength, Card [] tableCards, Card [] handCards) {
+		this.strength = strength;
+		pattern = FastEvaluator.getPattern(strength);
+		
+		Card [] cards = new Card[tableCards.length + handCards.length];
+		System.arraycopy(tableCards, 0, cards, 0, tableCards.length);
+		System.arraycopy(handCards, 0, cards, tableCards.length, handCards.length);
+		
+		Suit flushSuit = null;
+		if (pattern == Pattern.FLUSH || pattern == Pattern.STRAIGHT_FLUSH || pattern == Pattern.ROYAL_FLUSH) {
+			int [] suitCnts = new int[4];
+			for (Card card : cards) {
+				if ( ++suitCnts[card.getSuit().getIntValue()] == 5 )
+					flushSuit = card.getSuit();
+			}
+		}
+		
+		boolean [] used = new boolean[cards.length];
+		for (int i=0; i<5; i++) {
+			int rank = FastEvaluator.getHighCardRank(strength, i);
+			int pickIdx = -1;
+			for (int j=0; j<cards.length; j++) {
+				if ( used[j] || cards[j].getRank().getIntValue() != rank 
+						|| flushSuit != null && cards[j].getSuit() != flushSuit )
+					continue;
+				if ( pickIdx < 0 || cards[j].getSuit().compareTo(cards[pickIdx].getSuit()) > 0 )
+					pickIdx = j;
+			}
+			used[pickIdx] = true;
+			highCards.add(cards[pickIdx]);
+		}
+	}
+
 	@Override
 	public String toString() {
 		return pattern.toString() + ", " + highCards.toString();
@@ -79,30 +126,48 @@ public class Score implements Comparable<Score> {
 	
 	@Override
 	public int compareTo(Score o) {
-		int c = pattern.compareTo(o.pattern);
-		if (c!=0)
-			return c;
-		else
-			return compareHighCards(o);
+		int s = getStrength();
+		int os = o.getStrength();
+		return s < os ? -1 : (s == os ? 0 : 1);
 	}
 
+	/**
+	 * scores are equal when their strengths are, whatever the cards, as compareTo().
+	 * So scores of different hands that tie are the same key in a hash map or set;
+	 * key on the instances, e.g. with an IdentityHashMap, to tell the hands apart.
+	 */
 	@Override
 	public boolean equals(Object obj) {
-		Score o = (Score) obj;
-		if ( pattern == o.pattern && compareHighCards(o)==0 )
-			return true;
-		else
+		if ( !(obj instanceof Score) )
 			return false;
+		Score o = (Score) obj;
+		return getStrength() == o.getStrength();
+	}
+
+	/**
+	 * the strength, consistent with equals()
+	 */
+	@Override
+	public int hashCode() {
+		return getStrength();
 	}
 	
-	private int compareHighCards(Score o) {
-		for (int i=0; i<highCards.size(); i++) {
-			if ( highCards.get(i).getRank().getIntValue() < o.highCards.get(i).getRank().getIntValue() )
-				return -1;
-			else if ( highCards.get(i).getRank().getIntValue() > o.highCards.get(i).getRank().getIntValue() )
-				return 0xffff;
+	/**
+	 * the pattern and the ranks of the high cards, packed in an int:
+	 *  pattern << 20 | rank0 << 16 | rank1 << 12 | rank2 << 8 | rank3 << 4 | rank4
+	 *  
+	 * comparing strengths as integers is the same as comparing the scores.
+	 * It is computed once the high cards are complete, i.e. after evaluation. 
+	 */
+	public int getStrength() {
+		if (strength < 0) {
+			int s = pattern.getIntValue();
+			for (int i=0; i<highCards.size(); i++) {
+				s = s << 4 | highCards.get(i).getRank().getIntValue();
+			}
+			strength = s;
 		}
-		return 0;
+		return strength;
 	}
 
 	/////////////////////////////
@@ -114,18 +179,24 @@ public class Score implements Comparable<Score> {
 
 	public void setPattern(Pattern pattern) {
 		this.pattern = pattern;
+		strength = -1;
 	}
 
 	/**
 	 *  get organized highest pattern cards.
-	 *  the order of cards shall be from high to low
+	 *  the order of cards shall be from high to low.
+	 *  The list can not be changed, as the strength is computed from it; use setHighCards().
 	 */
-	public ArrayList<Card> getHighCards() {
-		return highCards;
+	public List<Card> getHighCards() {
+		return Collections.unmodifiableList(highCards);
 	}
 
-	public void setHighCards(ArrayList<Card> highCards) {
-		this.highCards = highCards;
+	/**
+	 * the cards are copied, so later changes of the list given do not affect the score
+	 */
+	public void setHighCards(List<Card> highCards) {
+		this.highCards = new ArrayList<Card>(highCards);
+		strength = -1;
 	}
 
 	
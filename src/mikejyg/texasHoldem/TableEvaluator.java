@@ -0,0 +1,302 @@
+/*
+	Copyright 2012 Junyang Gu
+
+	This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package mikejyg.texasHoldem;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import org.apache.log4j.Logger;
+
+import mikejyg.playingCards.Card;
+import mikejyg.playingCards.Card.Rank;
+import mikejyg.playingCards.Card.Suit;
+import mikejyg.playingCards.Deck;
+
+/**
+ * a 7-card hand evaluator answering with table lookups.
+ *
+ * Hands without a flush are looked up by the sum of per-rank keys, which is unique for
+ * every 7-card rank combination. Flushes are looked up by the rank bits of the flush suit.
+ *
+ * The tables are built once from the Evaluator, saved to a file, and memory mapped,
+ * so JVMs on the same machine share the page cached copy.
+ *
+ * Results are strength values, as FastEvaluator.
+ */
+public class TableEvaluator {
+
+	static Logger logger = Logger.getLogger(TableEvaluator.class);
+
+	static private final int MAGIC = 0x54485437;	// "THT7"
+	static private final int VERSION = 1;
+	static private final int HEADER_INTS = 4;
+
+	/**
+	 * rank keys, indexed by rank int value.
+	 * no two 7-card rank combinations (up to 4 cards of a rank) have the same sum.
+	 */
+	static private final int [] RANK_KEYS = { 0, 0,
+		0, 1, 5, 22, 98, 453, 2031, 8698, 22854, 83661, 262349, 636345, 1479181 };
+
+	static private final int RANK_TABLE_SIZE = 4 * RANK_KEYS[14] + 3 * RANK_KEYS[13] + 1;
+
+	static private final int FLUSH_TABLE_SIZE = 1 << 13;
+
+	/**
+	 * rank keys, indexed by card int value
+	 */
+	static private final int [] CARD_KEYS = new int[Card.TOTAL_CARDS];
+
+	static {
+		for (int i=0; i<Card.TOTAL_CARDS; i++) {
+			int rank = i % 13 + 1;
+			if (rank == 1)
+				rank = 14;
+			CARD_KEYS[i] = RANK_KEYS[rank];
+		}
+	}
+
+	private IntBuffer rankTable;
+	private IntBuffer flushTable;
+
+	/**
+	 * map the tables from a file. The file is built first, if it does not exist.
+	 */
+	public TableEvaluator(File file) throws IOException {
+		if ( !file.exists() ) {
+			build(file);
+		}
+
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		MappedByteBuffer buffer;
+		try {
+			buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+		} finally {
+			// the mapping stays valid after the channel is closed
+			raf.close();
+		}
+
+		IntBuffer ints = buffer.asIntBuffer();
+		if ( ints.limit() != HEADER_INTS + RANK_TABLE_SIZE + FLUSH_TABLE_SIZE
+				|| ints.get(0) != MAGIC || ints.get(1) != VERSION
+				|| ints.get(2) != RANK_TABLE_SIZE || ints.get(3) != FLUSH_TABLE_SIZE ) {
+			throw new IOException("invalid table file: " + file);
+		}
+
+		ints.position(HEADER_INTS);
+		ints.limit(HEADER_INTS + RANK_TABLE_SIZE);
+		rankTable = ints.slice();
+
+		ints.limit(ints.capacity());
+		ints.position(HEADER_INTS + RANK_TABLE_SIZE);
+		flushTable = ints.slice();
+	}
+
+	/////////////////////////////
+	// evaluation
+
+	/**
+	 * @param cardValues 7 card int values, as Card.getIntValue()
+	 */
+	public int evaluate(int [] cardValues, int offset) {
+		long mask = 0;
+		int keySum = 0;
+		for (int i=offset; i<offset+7; i++) {
+			mask |= FastEvaluator.toMask(cardValues[i]);
+			keySum += CARD_KEYS[cardValues[i]];
+		}
+		return lookup(mask, keySum);
+	}
+
+	public int evaluate(Card [] cards) {
+		long mask = 0;
+		int keySum = 0;
+		for (int i=0; i<7; i++) {
+			mask |= FastEvaluator.toMask(cards[i]);
+			keySum += RANK_KEYS[cards[i].getRank().getIntValue()];
+		}
+		return lookup(mask, keySum);
+	}
+
+	private int lookup(long mask, int keySum) {
+		for (int suit=0; suit<4; suit++) {
+			int suitRanks = (int) (mask >>> (suit * 16)) & 0x7ffc;
+			if (Integer.bitCount(suitRanks) >= 5)
+				return flushTable.get(suitRanks >>> 2);
+		}
+		return rankTable.get(keySum);
+	}
+
+	/////////////////////////////
+	// table building
+
+	/**
+	 * build the tables with the Evaluator, and save them to a file.
+	 * The file is written under a temporary name first, and moved into place atomically,
+	 * so readers never see a partial file. Processes building at the same time write 
+	 * identical content, so it does not matter which move lands last.
+	 */
+	public static void build(File file) throws IOException {
+		logger.info("building table: " + file);
+
+		int [] rankTable = new int[RANK_TABLE_SIZE];
+		int [] flushTable = new int[FLUSH_TABLE_SIZE];
+
+		buildRankTable(rankTable, new Evaluator(), new int[15], 14, 7);
+		buildFlushTable(flushTable, new Evaluator());
+
+		File tmpFile = File.createTempFile(file.getName(), ".tmp", file.getAbsoluteFile().getParentFile());
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(RANK_TABLE_SIZE);
+			out.writeInt(FLUSH_TABLE_SIZE);
+			for (int i=0; i<RANK_TABLE_SIZE; i++)
+				out.writeInt(rankTable[i]);
+			for (int i=0; i<FLUSH_TABLE_SIZE; i++)
+				out.writeInt(flushTable[i]);
+		} finally {
+			out.close();
+		}
+
+		try {
+			Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			// left only if the move failed
+			tmpFile.delete();
+		}
+	}
+
+	/**
+	 * enumerate rank counts, from the given rank down, with the number of cards left to place.
+	 */
+	private static void buildRankTable(int [] table, Evaluator evaluator, int [] rankCounts,
+			int rank, int cardsLeft) {
+
+		if (cardsLeft == 0) {
+			// deal the suits round robin, so no suit has more than 2 cards
+			Card [] cards = new Card[7];
+			int cardIdx = 0;
+			int keySum = 0;
+			for (int r=2; r<=14; r++) {
+				for (int i=0; i<rankCounts[r]; i++) {
+					cards[cardIdx] = Card.of( Rank.getRank(r), Suit.values()[cardIdx % 4] );
+					cardIdx++;
+					keySum += RANK_KEYS[r];
+				}
+			}
+
+			int strength = FastEvaluator.toStrength( evaluator.evalulate(cards) );
+			if (table[keySum] != 0 && table[keySum] != strength)
+				throw new Error("rank key collision at " + keySum);
+			table[keySum] = strength;
+			return;
+		}
+
+		if (rank < 2)
+			return;
+
+		for (int cnt=0; cnt<=4 && cnt<=cardsLeft; cnt++) {
+			rankCounts[rank] = cnt;
+			buildRankTable(table, evaluator, rankCounts, rank-1, cardsLeft-cnt);
+		}
+		rankCounts[rank] = 0;
+	}
+
+	private static void buildFlushTable(int [] table, Evaluator evaluator) {
+		for (int bits=0; bits<FLUSH_TABLE_SIZE; bits++) {
+			int flushCnt = Integer.bitCount(bits);
+			if (flushCnt < 5 || flushCnt > 7)
+				continue;
+
+			Card [] cards = new Card[7];
+			int cardIdx = 0;
+			for (int r=2; r<=14; r++) {
+				if ( (bits & (1 << (r-2))) != 0 )
+					cards[cardIdx++] = Card.of(Rank.getRank(r), Suit.CLUB);
+			}
+
+			// off suit fillers do not change a flush
+			if (cardIdx < 7)
+				cards[cardIdx++] = Card.of(Rank.TWO, Suit.DIAMOND);
+			if (cardIdx < 7)
+				cards[cardIdx++] = Card.of(Rank.TWO, Suit.HEART);
+
+			table[bits] = FastEvaluator.toStrength( evaluator.evalulate(cards) );
+		}
+	}
+
+	///////////////////////////////////////////////
+	// test
+
+	/**
+	 * compares against the FastEvaluator, on the same deals as Evaluator.main.
+	 * arguments: table file, seed, loop count
+	 */
+	public static void main(String[] args) throws IOException {
+		File file = new File("holdem7.tbl");
+		long seed = 1;
+		int loopCount = 1000000;
+
+		if (args.length>=1) {
+			file = new File(args[0]);
+		}
+
+		if (args.length>=2) {
+			seed = Long.parseLong(args[1]);
+		}
+
+		if (args.length>=3) {
+			loopCount = Integer.parseInt(args[2]);
+		}
+
+		long startTime = System.currentTimeMillis();
+		TableEvaluator tableEvaluator = new TableEvaluator(file);
+		System.out.println("table ready in " + (System.currentTimeMillis() - startTime) + " ms");
+
+		int mismatches = 0;
+
+		Deck deck = new Deck();
+		deck.setLazyShuffle(true);
+		for (int cnt=0; cnt<loopCount; cnt++, seed++) {
+			deck.reset(seed);
+			deck.shuffle();
+			Card [] cards = new Card[7];
+			deck.removeTailCards(cards);
+
+			int strength = tableEvaluator.evaluate(cards);
+			if ( strength != FastEvaluator.evaluate(cards) ) {
+				mismatches++;
+				System.out.println("mismatch, seed " + seed + ": " + FastEvaluator.toString(strength));
+			}
+		}
+
+		System.out.println(loopCount + " hands, " + mismatches + " mismatches");
+	}
+
+}